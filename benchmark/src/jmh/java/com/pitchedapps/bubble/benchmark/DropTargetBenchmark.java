@@ -0,0 +1,66 @@
+package com.pitchedapps.bubble.benchmark;
+
+import com.pitchedapps.bubble.library.physics.DropTarget;
+import com.pitchedapps.bubble.library.physics.DropTargetIndex;
+import com.pitchedapps.bubble.library.physics.SpringConfigs;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the per move event cost of finding the drop target under a dragged bubble, which should
+ * not grow with the number of registered targets.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DropTargetBenchmark {
+
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 1920;
+    private static final int RADIUS = 120;
+
+    @Param({"1", "16", "64"})
+    public int targetCount;
+
+    private DropTargetIndex mIndex;
+    private int mEvent;
+
+    @Setup
+    public void setup() {
+        mIndex = new DropTargetIndex(WIDTH, HEIGHT, RADIUS);
+        final DropTarget.Listener listener = new DropTarget.Listener() {
+            @Override
+            public void onBubbleEnter(DropTarget target, String key) {
+            }
+
+            @Override
+            public void onBubbleExit(DropTarget target, String key) {
+            }
+
+            @Override
+            public void onBubbleDrop(DropTarget target, String key) {
+            }
+        };
+        // Spread the targets over the screen, as pin and share zones along the edges would be
+        for (int i = 0; i < targetCount; i++) {
+            final int x = (int) ((i * 0.618034 % 1) * WIDTH);
+            final int y = (int) ((i * 0.381966 % 1) * HEIGHT);
+            mIndex.add(new DropTarget(i, x, y, RADIUS / 2, SpringConfigs.SNAP, listener));
+        }
+    }
+
+    @Benchmark
+    public DropTarget query() {
+        mEvent += 7;
+        return mIndex.query(mEvent * 13 % WIDTH, mEvent * 29 % HEIGHT);
+    }
+}
@@ -0,0 +1,45 @@
+package com.pitchedapps.bubble.benchmark;
+
+import com.pitchedapps.bubble.library.physics.MovementTracker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the per move event cost of the touch history and the fling velocity correction.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MovementTrackerBenchmark {
+
+    private final float[] mVelocities = new float[2];
+    private MovementTracker mTracker;
+    private long mEventTime;
+
+    @Setup
+    public void setup() {
+        mTracker = MovementTracker.obtain();
+        mTracker.onDown();
+    }
+
+    @Benchmark
+    public void addMovement() {
+        mEventTime += 8;
+        mTracker.addMovement(mEventTime % 1080, mEventTime % 1920, mEventTime);
+    }
+
+    @Benchmark
+    public float[] getAdjustedVelocities() {
+        addMovement();
+        mTracker.getAdjustedVelocities(1200f, -800f, mVelocities);
+        return mVelocities;
+    }
+}
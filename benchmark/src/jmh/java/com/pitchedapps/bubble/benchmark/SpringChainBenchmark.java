@@ -0,0 +1,101 @@
+package com.pitchedapps.bubble.benchmark;
+
+import com.facebook.rebound.BaseSpringSystem;
+import com.facebook.rebound.Spring;
+import com.facebook.rebound.SpringConfig;
+import com.facebook.rebound.SpringSystemListener;
+import com.pitchedapps.bubble.library.physics.ManualSpringLooper;
+import com.pitchedapps.bubble.library.physics.SpringChain2D;
+import com.pitchedapps.bubble.library.physics.SpringConfigs;
+import com.pitchedapps.bubble.library.physics.SpringIdleTracker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the chain math and the rebound stepping of a master bubble followed by its slaves.
+ * The bubble count includes the master, so a count of 1 has no slaves, and counts of 7 and 51 have
+ * 6 and 50. Analytic chains evaluate their slaves in closed form instead of integrating them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SpringChainBenchmark {
+
+    private static final int DISPLAY_WIDTH = 1080;
+    private static final float DENSITY = 3f;
+    private static final long FRAME_MS = 16;
+
+    @Param({"1", "7", "51"})
+    public int bubbleCount;
+
+    @Param({"false", "true"})
+    public boolean analytic;
+
+    private ManualSpringLooper mLooper;
+    private SpringChain2D mChain;
+    private int mMasterX;
+    private long mNow;
+
+    @Setup
+    public void setup() {
+        mLooper = new ManualSpringLooper();
+        final BaseSpringSystem springSystem = new BaseSpringSystem(mLooper);
+        if (analytic) {
+            mChain = SpringChain2D.createAnalytic(DISPLAY_WIDTH, DENSITY, bubbleCount, SpringConfigs.DEFAULT_CHAIN_CURVE,
+                    new SpringIdleTracker.Clock() {
+                        @Override
+                        public long now() {
+                            return mNow;
+                        }
+                    });
+            springSystem.addListener(new SpringSystemListener() {
+                @Override
+                public void onBeforeIntegrate(BaseSpringSystem springSystem) {
+
+                }
+
+                @Override
+                public void onAfterIntegrate(BaseSpringSystem springSystem) {
+                    mChain.updateFollowers();
+                }
+            });
+        } else {
+            mChain = SpringChain2D.create(DISPLAY_WIDTH, DENSITY, bubbleCount);
+        }
+        for (int index = bubbleCount - 1; index > 0; index--) {
+            // Same curve as BubbleService uses for the slaves
+            final SpringConfig config = SpringConfig.fromOrigamiTensionAndFriction(90, 9 + (index * 5));
+            final Spring xSpring = springSystem.createSpring().setSpringConfig(config);
+            final Spring ySpring = springSystem.createSpring().setSpringConfig(config);
+            mChain.addSlaveSprings(xSpring, ySpring);
+        }
+    }
+
+    /**
+     * Retargets every slave, alternating the master between both sides of the screen.
+     */
+    @Benchmark
+    public void performGroupMove() {
+        mMasterX = mMasterX == 100 ? DISPLAY_WIDTH - 100 : 100;
+        mChain.performGroupMove(mMasterX, 500);
+    }
+
+    /**
+     * Retargets every slave and advances the spring system by one 60 Hz frame.
+     */
+    @Benchmark
+    public boolean performGroupMoveAndStep() {
+        performGroupMove();
+        mNow += FRAME_MS;
+        return mLooper.advance(FRAME_MS);
+    }
+}
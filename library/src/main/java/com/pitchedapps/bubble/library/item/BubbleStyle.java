@@ -3,6 +3,7 @@ package com.pitchedapps.bubble.library.item;
 import android.graphics.drawable.Drawable;
 import android.support.annotation.ColorInt;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 
 import com.pitchedapps.bubble.library.utils.ColourUtils;
 
@@ -14,6 +15,7 @@ public class BubbleStyle {
     private int backgroundColor = ColourUtils.randomDarkColor();
     private String indicatorText = null;
     private Drawable iconDrawable = null;
+    private String iconKey = null;
 
     public BubbleStyle setBackgroundColor(@ColorInt int backgroundColor) {
         if (backgroundColor == -1) return this;
@@ -36,10 +38,30 @@ public class BubbleStyle {
 
     public BubbleStyle setIconDrawable(@NonNull Drawable drawable) {
         iconDrawable = drawable;
+        iconKey = null;
+        return this;
+    }
+
+    /**
+     * Sets the icon along with a key identifying it. Icons are downsampled to the bubble size and
+     * shared by every bubble using the same key, so the drawable can be dropped once it was shown.
+     *
+     * @param key      unique key of the icon, such as its url
+     * @param drawable icon
+     * @return this style
+     */
+    public BubbleStyle setIconDrawable(@NonNull String key, @NonNull Drawable drawable) {
+        iconDrawable = drawable;
+        iconKey = key;
         return this;
     }
 
     public Drawable getIconDrawable() {
         return iconDrawable;
     }
+
+    @Nullable
+    public String getIconKey() {
+        return iconKey;
+    }
 }
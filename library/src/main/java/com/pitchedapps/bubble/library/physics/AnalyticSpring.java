@@ -0,0 +1,200 @@
+package com.pitchedapps.bubble.library.physics;
+
+import android.support.annotation.NonNull;
+
+import com.facebook.rebound.SpringConfig;
+
+/**
+ * Damped spring evaluated from its closed-form solution instead of being integrated frame by frame.
+ * <p>
+ * Uses the same model as a rebound {@link com.facebook.rebound.Spring}: unit mass, and the tension
+ * and friction of a {@link SpringConfig}, with time in seconds. The motion is fully described by the
+ * position and velocity at the last change of the end value or config, so evaluating it at any time
+ * costs the same whether one frame or many have passed. Changing the end value or config rebases the
+ * solution on the current state, which keeps the position and velocity continuous.
+ */
+public class AnalyticSpring {
+
+    // Same thresholds as the rebound springs
+    private static final double REST_SPEED_THRESHOLD = 0.005;
+    private static final double REST_DISPLACEMENT_THRESHOLD = 0.005;
+    // Relative distance of the damping ratio from 1 below which the spring is critically damped
+    private static final double CRITICAL_EPSILON = 1e-6;
+
+    private static final int UNDERDAMPED = 0;
+    private static final int CRITICAL = 1;
+    private static final int OVERDAMPED = 2;
+    // No tension and no friction, the spring keeps its velocity
+    private static final int FREE = 3;
+
+    private double mTension;
+    private double mFriction;
+    private int mRegime;
+    // Half the friction, the decay rate of the underdamped and critical solutions
+    private double mAlpha;
+    // Damped angular frequency when underdamped, root distance when overdamped
+    private double mOmega;
+
+    private double mEndValue;
+    // Displacement from the end value and velocity at mStartMillis
+    private double mStartDisplacement;
+    private double mStartVelocity;
+    private long mStartMillis;
+    private boolean mAtRest = true;
+
+    // Last evaluation, as a frame usually reads the position and velocity at the same time
+    private long mEvalMillis;
+    private double mEvalDisplacement;
+    private double mEvalVelocity;
+
+    public AnalyticSpring(@NonNull SpringConfig config) {
+        setCoefficients(config);
+    }
+
+    /**
+     * Replaces the whole state of the spring, for example when taking over a numeric spring.
+     *
+     * @param position current position
+     * @param velocity current velocity, in units per second
+     * @param endValue value the spring is pulled to
+     * @param now      current time in milliseconds
+     */
+    public void setState(double position, double velocity, double endValue, long now) {
+        mEndValue = endValue;
+        mStartDisplacement = position - endValue;
+        mStartVelocity = velocity;
+        mStartMillis = now;
+        mEvalMillis = now;
+        mEvalDisplacement = mStartDisplacement;
+        mEvalVelocity = velocity;
+        mAtRest = isAtRest(mStartDisplacement, mStartVelocity);
+        // Without tension the spring rests wherever it stops
+        if (mAtRest && mTension == 0) mEndValue = position;
+    }
+
+    /**
+     * Pulls the spring to a new value from wherever it is at the given time.
+     *
+     * @return false if the end value did not change
+     */
+    public boolean setEndValue(double endValue, long now) {
+        if (endValue == mEndValue) return false;
+        setState(getPosition(now), getVelocity(now), endValue, now);
+        return true;
+    }
+
+    public void setSpringConfig(@NonNull SpringConfig config, long now) {
+        if (config.tension == mTension && config.friction == mFriction) return;
+        final double position = getPosition(now);
+        final double velocity = getVelocity(now);
+        setCoefficients(config);
+        setState(position, velocity, mEndValue, now);
+    }
+
+    /**
+     * Stops the spring where it is at the given time.
+     */
+    public void setAtRest(long now) {
+        final double position = getPosition(now);
+        setState(position, 0, position, now);
+    }
+
+    public double getEndValue() {
+        return mEndValue;
+    }
+
+    public double getPosition(long now) {
+        if (mAtRest) return mEndValue;
+        evaluate(now);
+        return mEndValue + mEvalDisplacement;
+    }
+
+    /**
+     * @return velocity in units per second
+     */
+    public double getVelocity(long now) {
+        if (mAtRest) return 0;
+        evaluate(now);
+        return mEvalVelocity;
+    }
+
+    /**
+     * Checks whether the spring came to rest by the given time, with the thresholds rebound uses.
+     * Once at rest the spring snaps to its end value, or stays where it stopped if it has no
+     * tension, until it is moved again.
+     */
+    public boolean isAtRest(long now) {
+        if (mAtRest) return true;
+        evaluate(now);
+        if (isAtRest(mEvalDisplacement, mEvalVelocity)) {
+            final double rest = mTension == 0 ? mEndValue + mEvalDisplacement : mEndValue;
+            setState(rest, 0, rest, now);
+        }
+        return mAtRest;
+    }
+
+    private boolean isAtRest(double displacement, double velocity) {
+        return Math.abs(velocity) <= REST_SPEED_THRESHOLD
+                && (Math.abs(displacement) <= REST_DISPLACEMENT_THRESHOLD || mTension == 0);
+    }
+
+    private void setCoefficients(@NonNull SpringConfig config) {
+        mTension = config.tension;
+        mFriction = config.friction;
+        mAlpha = mFriction / 2;
+        final double discriminant = mAlpha * mAlpha - mTension;
+        if (mTension == 0 && mFriction == 0) {
+            mRegime = FREE;
+            mOmega = 0;
+        } else if (Math.abs(discriminant) <= CRITICAL_EPSILON * mTension) {
+            mRegime = CRITICAL;
+            mOmega = 0;
+        } else if (discriminant < 0) {
+            mRegime = UNDERDAMPED;
+            mOmega = Math.sqrt(-discriminant);
+        } else {
+            mRegime = OVERDAMPED;
+            mOmega = Math.sqrt(discriminant);
+        }
+    }
+
+    /**
+     * Computes the displacement and velocity at the given time, unless they were already computed.
+     */
+    private void evaluate(long now) {
+        if (now == mEvalMillis) return;
+        mEvalMillis = now;
+        final double t = Math.max(0, now - mStartMillis) / 1000.0;
+        final double x0 = mStartDisplacement;
+        final double v0 = mStartVelocity;
+        switch (mRegime) {
+            case UNDERDAMPED: {
+                final double decay = Math.exp(-mAlpha * t);
+                final double cos = Math.cos(mOmega * t);
+                final double sin = Math.sin(mOmega * t);
+                mEvalDisplacement = decay * (x0 * cos + (v0 + mAlpha * x0) / mOmega * sin);
+                mEvalVelocity = decay * (v0 * cos - (mAlpha * v0 + mTension * x0) / mOmega * sin);
+                break;
+            }
+            case CRITICAL: {
+                final double decay = Math.exp(-mAlpha * t);
+                mEvalDisplacement = (x0 + (v0 + mAlpha * x0) * t) * decay;
+                mEvalVelocity = (v0 - mAlpha * (v0 + mAlpha * x0) * t) * decay;
+                break;
+            }
+            case OVERDAMPED: {
+                final double r1 = -mAlpha + mOmega;
+                final double r2 = -mAlpha - mOmega;
+                final double c2 = (r1 * x0 - v0) / (r1 - r2);
+                final double e1 = (x0 - c2) * Math.exp(r1 * t);
+                final double e2 = c2 * Math.exp(r2 * t);
+                mEvalDisplacement = e1 + e2;
+                mEvalVelocity = r1 * e1 + r2 * e2;
+                break;
+            }
+            default:
+                mEvalDisplacement = x0 + v0 * t;
+                mEvalVelocity = v0;
+        }
+    }
+}
@@ -0,0 +1,376 @@
+package com.pitchedapps.bubble.library.physics;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.facebook.rebound.Spring;
+import com.facebook.rebound.SpringConfig;
+
+/**
+ * Headless motion model of a single bubble. Owns the X and Y springs along with the drag, lock and
+ * coasting states, and holds the bounds checking, wall snapping, coasting and magnetism rules.
+ * <p>
+ * The model does not know about views or windows. It moves whenever the spring system of its springs
+ * is looped, which on Android is the Choreographer and on a plain JVM can be a
+ * {@link ManualSpringLooper} advanced by a test clock. Views read the resulting position through
+ * {@link #getX()} and {@link #getY()}.
+ */
+public class BubbleMotion {
+    private final Spring mXSpring;
+    private final Spring mYSpring;
+    @Nullable
+    private ScreenBounds mBounds;
+    // Position of the bubble when the current gesture started
+    private int mDownX, mDownY;
+    // True when being dragged, otherwise false
+    private boolean mDragging;
+    // True when attached to a magnetic target, otherwise false
+    private boolean mLocked;
+    // If the bubble is resting partly off screen
+    private boolean mCoasting;
+    // True while a fling or a remap travels to end values known to be within the bounds, which are not checked again
+    private boolean mProjected;
+
+    /**
+     * Receives the drop target under a dragged bubble and tells where to lock onto it.
+     */
+    public interface DropTargetHandler {
+        /**
+         * Called on every move event past the touch slop, before the bubble moves.
+         *
+         * @param target target under the bubble centre, or null if there is none
+         */
+        void onDragOver(@Nullable DropTarget target);
+
+        /**
+         * @return x of the bubble once locked onto the target
+         */
+        int getLockX(@NonNull DropTarget target);
+
+        /**
+         * @return y of the bubble once locked onto the target
+         */
+        int getLockY(@NonNull DropTarget target);
+    }
+
+    public BubbleMotion(@NonNull Spring xSpring, @NonNull Spring ySpring) {
+        mXSpring = xSpring;
+        mYSpring = ySpring;
+    }
+
+    public static float distSquared(float x1, float y1, float x2, float y2) {
+        final float dx = x2 - x1;
+        final float dy = y2 - y1;
+        return dx * dx + dy * dy;
+    }
+
+    /**
+     * Resting position of a spring without tension, such as {@link SpringConfigs#DRAG}, released at
+     * the given position and velocity. Friction alone decays the velocity exponentially, so the
+     * spring travels velocity / friction in total.
+     *
+     * @param position current position in pixels
+     * @param velocity velocity in pixels per second
+     * @param config   config without tension
+     * @return position the spring comes to rest at
+     */
+    public static double projectRestingPosition(double position, double velocity, @NonNull SpringConfig config) {
+        if (config.friction <= 0) return position;
+        return position + velocity / config.friction;
+    }
+
+    @NonNull
+    public Spring getXSpring() {
+        return mXSpring;
+    }
+
+    @NonNull
+    public Spring getYSpring() {
+        return mYSpring;
+    }
+
+    public int getX() {
+        return (int) mXSpring.getCurrentValue();
+    }
+
+    public int getY() {
+        return (int) mYSpring.getCurrentValue();
+    }
+
+    @Nullable
+    public ScreenBounds getBounds() {
+        return mBounds;
+    }
+
+    public void setBounds(@Nullable ScreenBounds bounds) {
+        mBounds = bounds;
+    }
+
+    /**
+     * Switches to the bounds of a new display size and animates the bubble to the same relative
+     * position within them. The bubble is not moved while a gesture holds it.
+     *
+     * @param bounds bounds of the new display size
+     * @param width  measured width of the bubble
+     */
+    public void remap(@NonNull ScreenBounds bounds, int width) {
+        final ScreenBounds previous = mBounds;
+        mBounds = bounds;
+        if (previous == null || mDragging || mLocked) return;
+        final boolean coasting = mCoasting;
+        goTo(bounds.remapX(previous, getX()), bounds.remapY(previous, getY()));
+        // The target is within the bounds, so the stale position on the way is not checked
+        mProjected = true;
+        if (coasting) coast(width);
+    }
+
+    public boolean isDragging() {
+        return mDragging;
+    }
+
+    public boolean isLocked() {
+        return mLocked;
+    }
+
+    public void setLocked(boolean locked) {
+        mLocked = locked;
+    }
+
+    public boolean isCoasting() {
+        return mCoasting;
+    }
+
+    public void setSpringConfig(@NonNull SpringConfig config) {
+        mXSpring.setSpringConfig(config);
+        mYSpring.setSpringConfig(config);
+    }
+
+    /**
+     * Places the bubble without animating.
+     */
+    public void setPosition(int x, int y) {
+        mXSpring.setCurrentValue(x);
+        mYSpring.setCurrentValue(y);
+    }
+
+    /**
+     * Starts a new gesture from the current position.
+     */
+    public void touchDown() {
+        mDragging = false;
+        mProjected = false;
+        mDownX = getX();
+        mDownY = getY();
+        cancelCoasting();
+    }
+
+    /**
+     * Updates the drag state with the offset of the pointer from where the gesture started.
+     *
+     * @param touchSlopSquare squared distance the pointer must travel before dragging starts
+     * @return true if the bubble is being dragged
+     */
+    public boolean updateDrag(float offsetX, float offsetY, int touchSlopSquare) {
+        if (offsetX * offsetX + offsetY * offsetY > touchSlopSquare) {
+            mDragging = true;
+        }
+        return mDragging;
+    }
+
+    /**
+     * Moves the bubble for a move event of the current gesture. Once the pointer left the touch slop,
+     * the bubble locks onto the drop target under its centre, or follows the pointer if there is none.
+     * Runs for every move event, so nothing is allocated.
+     *
+     * @param offsetX         x of the pointer relative to where the gesture started
+     * @param offsetY         y of the pointer relative to where the gesture started
+     * @param touchSlopSquare squared distance the pointer must travel before dragging starts
+     * @param targets         drop targets the bubble can lock onto
+     * @param halfSize        distance from the position of the bubble to its centre
+     * @param handler         receives the target under the bubble
+     * @return true if the bubble is being dragged
+     */
+    public boolean handleMove(float offsetX, float offsetY, int touchSlopSquare,
+                              @NonNull DropTargetIndex targets, int halfSize,
+                              @NonNull DropTargetHandler handler) {
+        if (!updateDrag(offsetX, offsetY, touchSlopSquare)) return false;
+        final int x = getDragX(offsetX);
+        final int y = getDragY(offsetY);
+        final DropTarget target = targets.query(x + halfSize, y + halfSize);
+        handler.onDragOver(target);
+        mLocked = target != null;
+        if (target != null) {
+            lockTo(handler.getLockX(target), handler.getLockY(target), target.getSpringConfig());
+        } else {
+            dragTo(x, y);
+        }
+        return true;
+    }
+
+    public int getDragX(float offsetX) {
+        return (int) (mDownX + offsetX);
+    }
+
+    public int getDragY(float offsetY) {
+        return (int) (mDownY + offsetY);
+    }
+
+    /**
+     * Makes the bubble follow the pointer. An axis already held at its value is not written again, as
+     * every rebound write notifies the spring listeners through a freshly allocated iterator.
+     */
+    public void dragTo(int x, int y) {
+        mProjected = false;
+        setSpringConfig(SpringConfigs.DRAG);
+        if (!isHeldAt(mXSpring, x)) mXSpring.setCurrentValue(x);
+        if (!isHeldAt(mYSpring, y)) mYSpring.setCurrentValue(y);
+    }
+
+    /**
+     * @return true if the spring is in the exact state {@link Spring#setCurrentValue(double)} would leave it in
+     */
+    private static boolean isHeldAt(@NonNull Spring spring, double value) {
+        return spring.getCurrentValue() == value && spring.getEndValue() == value && spring.getVelocity() == 0;
+    }
+
+    /**
+     * Snaps the bubble onto a magnetic target.
+     */
+    public void lockTo(int x, int y) {
+        lockTo(x, y, SpringConfigs.SNAP);
+    }
+
+    /**
+     * Snaps the bubble onto a magnetic target with the target's own config.
+     */
+    public void lockTo(int x, int y, @NonNull SpringConfig config) {
+        mProjected = false;
+        setSpringConfig(config);
+        // Move events keep locking onto the same target, which needs no new end value
+        if (mXSpring.getEndValue() != x) mXSpring.setEndValue(x);
+        if (mYSpring.getEndValue() != y) mYSpring.setEndValue(y);
+    }
+
+    /**
+     * Ends the current gesture.
+     *
+     * @param flung      true if the gesture ended with a fling
+     * @param userMoved  true if the bubble was ever moved by the user
+     */
+    public void release(boolean flung, boolean userMoved) {
+        mDragging = false;
+        if (!flung && userMoved) {
+            stickToWall();
+        }
+    }
+
+    /**
+     * Flings the bubble with the given velocities. Where it would come to rest if it travelled
+     * freely is projected once, and the bubble is sent straight to the wall on that side, at the
+     * projected height kept within the bounds. The springs keep the release velocity, so the fling
+     * is a single animation rather than free travel retargeted whenever an edge is crossed.
+     */
+    public void fling(float velocityX, float velocityY) {
+        mDragging = false;
+        if (mBounds == null) {
+            setSpringConfig(SpringConfigs.DRAG);
+            mXSpring.setVelocity(velocityX);
+            mYSpring.setVelocity(velocityY);
+            return;
+        }
+        final double restX = projectRestingPosition(getX(), velocityX, SpringConfigs.DRAG);
+        final double restY = projectRestingPosition(getY(), velocityY, SpringConfigs.DRAG);
+        mProjected = true;
+        setSpringConfig(SpringConfigs.FLING);
+        mXSpring.setVelocity(velocityX);
+        mYSpring.setVelocity(velocityY);
+        mXSpring.setEndValue(mBounds.isRight((int) restX) ? mBounds.right : mBounds.left);
+        mYSpring.setEndValue(Math.max(mBounds.top, Math.min(mBounds.bottom, restY)));
+    }
+
+    /**
+     * Moves the bubble further off the side it is resting on.
+     *
+     * @param width measured width of the bubble
+     */
+    public void coast(int width) {
+        mCoasting = true;
+        mProjected = false;
+        if (mBounds == null) return;
+        final int offset = width / 4;
+        if (getX() < mBounds.dispWidth / 2) {
+            mXSpring.setEndValue(mBounds.left - offset);
+        } else {
+            mXSpring.setEndValue(mBounds.right + offset);
+        }
+    }
+
+    public void cancelCoasting() {
+        mCoasting = false;
+    }
+
+    /**
+     * Pulls a free bubble back inside the bounds once it reaches an edge of the display.
+     *
+     * @param width measured width of the bubble
+     */
+    public void checkBounds(int width) {
+        // Only check when free, projected flings already end within the bounds
+        if (mDragging || mBounds == null || mCoasting || mProjected) {
+            return;
+        }
+
+        final int x = getX();
+        final int y = getY();
+
+        if (x + width >= mBounds.dispWidth) {
+            mXSpring.setSpringConfig(SpringConfigs.FLING);
+            mXSpring.setEndValue(mBounds.right);
+        }
+        if (x - width <= 0) {
+            mXSpring.setSpringConfig(SpringConfigs.FLING);
+            mXSpring.setEndValue(mBounds.left);
+        }
+        if (y + width >= mBounds.dispHeight) {
+            mYSpring.setSpringConfig(SpringConfigs.FLING);
+            mYSpring.setEndValue(mBounds.bottom);
+        }
+        if (y - width <= 0) {
+            mYSpring.setSpringConfig(SpringConfigs.FLING);
+            mYSpring.setEndValue(mBounds.top);
+        }
+    }
+
+    /**
+     * Makes the bubble stick to either side of the wall.
+     */
+    public void stickToWall() {
+        if (mBounds == null) return;
+        final int y = getY();
+        mXSpring.setSpringConfig(SpringConfigs.FLING);
+        mXSpring.setEndValue(mBounds.isRight(getX()) ? mBounds.right : mBounds.left);
+
+        if (y < mBounds.top) {
+            mYSpring.setSpringConfig(SpringConfigs.FLING);
+            mYSpring.setEndValue(mBounds.top);
+        } else if (y > mBounds.bottom) {
+            mYSpring.setSpringConfig(SpringConfigs.FLING);
+            mYSpring.setEndValue(mBounds.bottom);
+        }
+    }
+
+    /**
+     * Animates the bubble to the given point.
+     */
+    public void goTo(int x, int y) {
+        mProjected = false;
+        setSpringConfig(SpringConfigs.FLING);
+        mXSpring.setEndValue(x);
+        mYSpring.setEndValue(y);
+    }
+
+    public void destroy() {
+        mXSpring.destroy();
+        mYSpring.destroy();
+    }
+}
@@ -0,0 +1,94 @@
+package com.pitchedapps.bubble.library.physics;
+
+import android.support.annotation.NonNull;
+
+import com.facebook.rebound.SpringConfig;
+
+/**
+ * Magnetic area that dragged bubbles lock onto, such as the remove view. Bubbles entering the
+ * radius snap to the centre with the target's spring config, and are dropped on the target if
+ * released there.
+ */
+public class DropTarget {
+
+    /**
+     * Receives the bubbles hovering and dropped on a target, on the main thread.
+     */
+    public interface Listener {
+        void onBubbleEnter(@NonNull DropTarget target, @NonNull String key);
+
+        void onBubbleExit(@NonNull DropTarget target, @NonNull String key);
+
+        void onBubbleDrop(@NonNull DropTarget target, @NonNull String key);
+    }
+
+    private final int mId;
+    private int mCenterX;
+    private int mCenterY;
+    private final int mRadius;
+    private final double mRadiusSquared;
+    private final SpringConfig mSpringConfig;
+    private final Listener mListener;
+
+    /**
+     * @param id           identifies the target to its listener
+     * @param centerX      x of the centre in pixels
+     * @param centerY      y of the centre in pixels
+     * @param radius       distance in pixels from the centre at which bubbles lock on
+     * @param springConfig config used to snap bubbles to the centre, usually {@link SpringConfigs#SNAP}
+     * @param listener     receives the bubbles locked to the target
+     */
+    public DropTarget(int id, int centerX, int centerY, int radius, @NonNull SpringConfig springConfig,
+                      @NonNull Listener listener) {
+        mId = id;
+        mCenterX = centerX;
+        mCenterY = centerY;
+        mRadius = radius;
+        mRadiusSquared = (double) radius * radius;
+        mSpringConfig = springConfig;
+        mListener = listener;
+    }
+
+    public int getId() {
+        return mId;
+    }
+
+    public int getCenterX() {
+        return mCenterX;
+    }
+
+    public int getCenterY() {
+        return mCenterY;
+    }
+
+    public int getRadius() {
+        return mRadius;
+    }
+
+    @NonNull
+    public SpringConfig getSpringConfig() {
+        return mSpringConfig;
+    }
+
+    @NonNull
+    public Listener getListener() {
+        return mListener;
+    }
+
+    /**
+     * Moves the centre. Only called by {@link DropTargetIndex#move(DropTarget, int, int)}, which
+     * keeps the grid up to date.
+     */
+    void setCenter(int centerX, int centerY) {
+        mCenterX = centerX;
+        mCenterY = centerY;
+    }
+
+    /**
+     * @return squared distance to the centre if the point is within the radius, or -1
+     */
+    double distanceSquaredIfInside(int x, int y) {
+        final double distance = BubbleMotion.distSquared(mCenterX, mCenterY, x, y);
+        return distance < mRadiusSquared ? distance : -1;
+    }
+}
@@ -0,0 +1,123 @@
+package com.pitchedapps.bubble.library.physics;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+
+/**
+ * Uniform grid of the drop targets on screen. Every target is listed in the cells its radius
+ * overlaps, so finding the target under a bubble only checks the targets of a single cell however
+ * many are registered.
+ * <p>
+ * Points and targets outside of the screen are clamped to the border cells.
+ */
+public class DropTargetIndex {
+
+    private final int mCellSize;
+    private int mColumns;
+    private int mRows;
+    private ArrayList<ArrayList<DropTarget>> mCells;
+    private final ArrayList<DropTarget> mTargets = new ArrayList<>();
+
+    /**
+     * @param width    screen width in pixels
+     * @param height   screen height in pixels
+     * @param cellSize cell side in pixels, best close to the usual target radius
+     */
+    public DropTargetIndex(int width, int height, int cellSize) {
+        mCellSize = Math.max(1, cellSize);
+        resize(width, height);
+    }
+
+    /**
+     * Rebuilds the grid for a new screen size, such as after a rotation. Targets keep their centre.
+     */
+    public void resize(int width, int height) {
+        mColumns = Math.max(1, (width + mCellSize - 1) / mCellSize);
+        mRows = Math.max(1, (height + mCellSize - 1) / mCellSize);
+        mCells = new ArrayList<>(mColumns * mRows);
+        for (int i = 0; i < mColumns * mRows; i++) {
+            mCells.add(new ArrayList<DropTarget>(2));
+        }
+        for (int i = 0; i < mTargets.size(); i++) {
+            insert(mTargets.get(i));
+        }
+    }
+
+    public void add(@NonNull DropTarget target) {
+        if (mTargets.contains(target)) return;
+        mTargets.add(target);
+        insert(target);
+    }
+
+    public void remove(@NonNull DropTarget target) {
+        if (mTargets.remove(target)) erase(target);
+    }
+
+    /**
+     * Moves the centre of a registered target.
+     */
+    public void move(@NonNull DropTarget target, int centerX, int centerY) {
+        final boolean registered = mTargets.contains(target);
+        if (registered) erase(target);
+        target.setCenter(centerX, centerY);
+        if (registered) insert(target);
+    }
+
+    public int size() {
+        return mTargets.size();
+    }
+
+    /**
+     * @return the target with the closest centre among the ones whose radius contains the point,
+     * or null if there is none
+     */
+    @Nullable
+    public DropTarget query(int x, int y) {
+        final ArrayList<DropTarget> cell = mCells.get(row(y) * mColumns + column(x));
+        DropTarget closest = null;
+        double closestDistance = Double.MAX_VALUE;
+        for (int i = 0; i < cell.size(); i++) {
+            final DropTarget target = cell.get(i);
+            final double distance = target.distanceSquaredIfInside(x, y);
+            if (distance >= 0 && distance < closestDistance) {
+                closest = target;
+                closestDistance = distance;
+            }
+        }
+        return closest;
+    }
+
+    private void insert(@NonNull DropTarget target) {
+        final int left = column(target.getCenterX() - target.getRadius());
+        final int right = column(target.getCenterX() + target.getRadius());
+        final int top = row(target.getCenterY() - target.getRadius());
+        final int bottom = row(target.getCenterY() + target.getRadius());
+        for (int row = top; row <= bottom; row++) {
+            for (int column = left; column <= right; column++) {
+                mCells.get(row * mColumns + column).add(target);
+            }
+        }
+    }
+
+    private void erase(@NonNull DropTarget target) {
+        final int left = column(target.getCenterX() - target.getRadius());
+        final int right = column(target.getCenterX() + target.getRadius());
+        final int top = row(target.getCenterY() - target.getRadius());
+        final int bottom = row(target.getCenterY() + target.getRadius());
+        for (int row = top; row <= bottom; row++) {
+            for (int column = left; column <= right; column++) {
+                mCells.get(row * mColumns + column).remove(target);
+            }
+        }
+    }
+
+    private int column(int x) {
+        return Math.min(mColumns - 1, Math.max(0, x / mCellSize));
+    }
+
+    private int row(int y) {
+        return Math.min(mRows - 1, Math.max(0, y / mCellSize));
+    }
+}
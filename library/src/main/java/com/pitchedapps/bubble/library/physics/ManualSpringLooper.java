@@ -0,0 +1,44 @@
+package com.pitchedapps.bubble.library.physics;
+
+import com.facebook.rebound.SpringLooper;
+
+/**
+ * Spring looper advanced explicitly by its owner rather than by the display, for driving the physics
+ * headlessly on a plain JVM.
+ * <p>
+ * Unlike {@link com.facebook.rebound.SteppingLooper}, which hands the accumulated time to the spring
+ * system, every call to {@link #advance(double)} integrates exactly the given frame duration.
+ */
+public class ManualSpringLooper extends SpringLooper {
+
+    private boolean mStarted;
+
+    @Override
+    public void start() {
+        mStarted = true;
+    }
+
+    @Override
+    public void stop() {
+        mStarted = false;
+    }
+
+    /**
+     * @return true if a spring is active and the next {@link #advance(double)} will move it
+     */
+    public boolean isRunning() {
+        return mStarted;
+    }
+
+    /**
+     * Integrates all active springs by one frame.
+     *
+     * @param frameMillis duration of the frame in milliseconds
+     * @return true if springs are still active after this frame
+     */
+    public boolean advance(double frameMillis) {
+        if (mSpringSystem == null || !mStarted) return false;
+        mSpringSystem.loop(frameMillis);
+        return !mSpringSystem.getIsIdle();
+    }
+}
@@ -1,10 +1,6 @@
 package com.pitchedapps.bubble.library.physics;
 
 import android.support.annotation.NonNull;
-import android.view.MotionEvent;
-
-import java.util.Collection;
-import java.util.LinkedList;
 
 /**
  * A helper class for tracking web heads movements. This is needed to correctly apply polarity on calculated velocity
@@ -12,15 +8,14 @@ import java.util.LinkedList;
  * X and Y velocity should be positive. Sometimes that is not the case with raw values given by {@link android.view.VelocityTracker}
  */
 public class MovementTracker {
+    private static final int TRACKING_SIZE = 10;
     private static MovementTracker sInstance;
-    private final SizedQueue<Float> mXPoints;
-    private final SizedQueue<Float> mYPoints;
+    private final MovementRingBuffer mPoints;
     private int mTrackingSize = 0;
 
     private MovementTracker() {
-        mTrackingSize = 10;
-        mXPoints = new SizedQueue<>(mTrackingSize);
-        mYPoints = new SizedQueue<>(mTrackingSize);
+        mTrackingSize = TRACKING_SIZE;
+        mPoints = new MovementRingBuffer(mTrackingSize);
     }
 
     @NonNull
@@ -31,13 +26,14 @@ public class MovementTracker {
         return sInstance;
     }
 
-    public static float[] adjustVelocities(float[] p1, float[] p2, float xVelocity, float yVelocity) {
-        float downX = p1[0];
-        float downY = p1[1];
-
-        float upX = p2[0];
-        float upY = p2[1];
-
+    /**
+     * Corrects the polarity of the given velocities based on the direction from the down point to
+     * the up point.
+     *
+     * @param out array of at least 2 elements receiving the adjusted x and y velocities
+     */
+    public static void adjustVelocities(float downX, float downY, float upX, float upY,
+                                        float xVelocity, float yVelocity, @NonNull float[] out) {
         float x = 0, y = 0;
 
         if (upX >= downX && upY >= downY) {
@@ -57,7 +53,8 @@ public class MovementTracker {
             x = negate(xVelocity);
             y = positive(yVelocity);
         }
-        return new float[]{x, y};
+        out[0] = x;
+        out[1] = y;
     }
 
     private static float negate(float value) {
@@ -69,102 +66,121 @@ public class MovementTracker {
     }
 
     /**
-     * Adds a motion event to the tracker.
+     * Adds a motion event to the tracker. Takes the raw values rather than the event itself so that
+     * the physics package stays free of Android classes and can be benchmarked on a plain JVM.
      *
-     * @param event The event to be added.
+     * @param x         raw x position, {@link android.view.MotionEvent#getRawX()}
+     * @param y         raw y position, {@link android.view.MotionEvent#getRawY()}
+     * @param eventTime time of the event, {@link android.view.MotionEvent#getEventTime()}
      */
-    public void addMovement(@NonNull MotionEvent event) {
-        float x = event.getRawX();
-        float y = event.getRawY();
-        mXPoints.add(x);
-        mYPoints.add(y);
+    public void addMovement(float x, float y, long eventTime) {
+        mPoints.add(x, y, eventTime);
     }
 
     /**
      * Clear the tracking queue when user begins the gesture.
      */
     public void onDown() {
-        mXPoints.clear();
-        mYPoints.clear();
+        mPoints.clear();
     }
 
     /**
      * Clear the tracking queue when user ends the gesture.
      */
     public void onUp() {
-        mXPoints.clear();
-        mYPoints.clear();
+        mPoints.clear();
     }
 
-    public float[] getAdjustedVelocities(float xVelocity, float yVelocity) {
+    /**
+     * Adjusts the velocities from the tracked movement if enough points were recorded.
+     *
+     * @param out array of at least 2 elements receiving the adjusted x and y velocities
+     * @return true if the velocities were written, false if there is not enough history
+     */
+    public boolean getAdjustedVelocities(float xVelocity, float yVelocity, @NonNull float[] out) {
         int trackingThreshold = (int) (0.25 * mTrackingSize);
-        float[] velocities;
-        if (mXPoints.size() >= trackingThreshold) {
-            int downIndex = mXPoints.size() - trackingThreshold;
-
-            float[] up = new float[]{mXPoints.getLast(), mYPoints.getLast()};
-            float[] down = new float[]{mXPoints.get(downIndex), mYPoints.get(downIndex)};
-
-            velocities = adjustVelocities(down, up, xVelocity, yVelocity);
-        } else {
-            velocities = null;
-        }
-        return velocities;
+        final int size = mPoints.size();
+        if (size < trackingThreshold) return false;
+        final int downIndex = size - trackingThreshold;
+        final int upIndex = size - 1;
+        adjustVelocities(mPoints.getX(downIndex), mPoints.getY(downIndex),
+                mPoints.getX(upIndex), mPoints.getY(upIndex),
+                xVelocity, yVelocity, out);
+        return true;
     }
 
     @Override
     public String toString() {
-        return mXPoints.toString() + mYPoints.toString();
+        return mPoints.toString();
     }
 }
 
 /**
- * A size limited queue structure that evicts the queue head when maximum queue size is reached. At
- * any instant the queue is equal or less than the max queue size.
- *
- * @param <E>
+ * A fixed capacity ring buffer of primitive touch points that overwrites the oldest point when full.
+ * Indices are relative to the oldest retained point. Nothing is allocated after construction.
  */
-class SizedQueue<E> extends LinkedList<E> {
-    /**
-     * The maximum size of queue
-     */
-    private final int limit;
+class MovementRingBuffer {
+    private final float[] mXs;
+    private final float[] mYs;
+    private final long[] mTimes;
+    // Index of the oldest point
+    private int mHead;
+    private int mSize;
+
+    MovementRingBuffer(int capacity) {
+        mXs = new float[capacity];
+        mYs = new float[capacity];
+        mTimes = new long[capacity];
+    }
+
+    void add(float x, float y, long eventTime) {
+        final int capacity = mXs.length;
+        final int tail = (mHead + mSize) % capacity;
+        mXs[tail] = x;
+        mYs[tail] = y;
+        mTimes[tail] = eventTime;
+        if (mSize < capacity) {
+            mSize++;
+        } else {
+            mHead = (mHead + 1) % capacity;
+        }
+    }
 
-    SizedQueue(int limit) {
-        this.limit = limit;
+    void clear() {
+        mHead = 0;
+        mSize = 0;
     }
 
-    @Override
-    public boolean add(E o) {
-        super.add(o);
-        while (size() > limit) {
-            super.remove();
-        }
-        return true;
+    int size() {
+        return mSize;
     }
 
-    @Override
-    public boolean addAll(Collection<? extends E> collection) {
-        throw new UnsupportedOperationException("Not implemented, use add()");
+    float getX(int index) {
+        return mXs[physicalIndex(index)];
     }
 
-    @Override
-    public void add(int location, E object) {
-        throw new UnsupportedOperationException("Not implemented, use add()");
+    float getY(int index) {
+        return mYs[physicalIndex(index)];
     }
 
-    @Override
-    public void addFirst(E object) {
-        throw new UnsupportedOperationException("Not implemented, use add()");
+    long getEventTime(int index) {
+        return mTimes[physicalIndex(index)];
     }
 
-    @Override
-    public void addLast(E object) {
-        throw new UnsupportedOperationException("Not implemented, use add()");
+    private int physicalIndex(int index) {
+        if (index < 0 || index >= mSize) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + mSize);
+        }
+        return (mHead + index) % mXs.length;
     }
 
     @Override
-    public boolean addAll(int location, Collection<? extends E> collection) {
-        throw new UnsupportedOperationException("Not implemented, use add()");
+    public String toString() {
+        final StringBuilder builder = new StringBuilder("[");
+        for (int i = 0; i < mSize; i++) {
+            if (i > 0) builder.append(", ");
+            builder.append('(').append(getX(i)).append(", ").append(getY(i)).append(')');
+        }
+        return builder.append(']').toString();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,80 @@
+package com.pitchedapps.bubble.library.physics;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Helper class to hold screen boundaries that a bubble is allowed to travel, in pixels.
+ */
+public class ScreenBounds {
+    /**
+     * Amount of bubble that will be displaced off of the screen horizontally
+     */
+    private static final double DISPLACE_PERC = 0.7;
+
+    public final int dispWidth;
+    public final int dispHeight;
+
+    public final int left;
+    public final int right;
+    public final int top;
+    public final int bottom;
+
+    private final int mBubbleWidth;
+    private final int mTopInset;
+
+    /**
+     * @param dispWidth   display width
+     * @param dispHeight  display height
+     * @param bubbleWidth measured width of a bubble
+     * @param topInset    minimum distance from the top of the display
+     */
+    public ScreenBounds(int dispWidth, int dispHeight, int bubbleWidth, int topInset) {
+        if (bubbleWidth == 0 || dispWidth == 0 || dispHeight == 0) {
+            throw new IllegalArgumentException("Width of bubble or screen size cannot be 0");
+        }
+        this.dispWidth = dispWidth;
+        this.dispHeight = dispHeight;
+        mBubbleWidth = bubbleWidth;
+        mTopInset = topInset;
+        right = (int) (dispWidth - (bubbleWidth * DISPLACE_PERC));
+        left = (int) (bubbleWidth * (1 - DISPLACE_PERC)) * -1;
+        top = topInset;
+        bottom = (int) (dispHeight * 0.85);
+    }
+
+    /**
+     * @return bounds of the same bubble on a display of the given size, such as after a rotation
+     */
+    @NonNull
+    public ScreenBounds resize(int dispWidth, int dispHeight) {
+        return new ScreenBounds(dispWidth, dispHeight, mBubbleWidth, mTopInset);
+    }
+
+    /**
+     * Maps an x within other bounds to the same relative x within these bounds. A bubble on or past
+     * a wall stays on that wall.
+     */
+    public int remapX(@NonNull ScreenBounds from, int x) {
+        if (x <= from.left) return left;
+        if (x >= from.right) return right;
+        return left + (int) Math.round((x - from.left) * (double) (right - left) / (from.right - from.left));
+    }
+
+    /**
+     * Maps a y within other bounds to the same relative y within these bounds.
+     */
+    public int remapY(@NonNull ScreenBounds from, int y) {
+        if (y <= from.top) return top;
+        if (y >= from.bottom) return bottom;
+        return top + (int) Math.round((y - from.top) * (double) (bottom - top) / (from.bottom - from.top));
+    }
+
+    /**
+     * Used to determine if the given pixel is to the left or the right of the screen.
+     *
+     * @return true if right
+     */
+    public boolean isRight(int x) {
+        return x > dispWidth / 2;
+    }
+}
@@ -1,112 +1,376 @@
 package com.pitchedapps.bubble.library.physics;
 
-import android.content.Context;
 import android.support.annotation.NonNull;
-import android.util.DisplayMetrics;
-import android.view.WindowManager;
+import android.support.annotation.Nullable;
 
 import com.facebook.rebound.Spring;
-import com.facebook.rebound.SpringListener;
-
-import java.util.Iterator;
-import java.util.LinkedList;
-
-import com.pitchedapps.bubble.library.utils.Utils;
+import com.facebook.rebound.SpringConfig;
 
 
 /**
  * Created by Arun on 06/08/2016.
  * Custom spring chain helper that simplifies maintaining 2 separate chains for X and Y axis.
+ * The chain does not listen to the master springs; the master bubble calls
+ * {@link #performGroupMove(int, int)} once per frame after its position was applied.
+ * <p>
+ * Slaves are kept in parallel ring arrays indexed by chain position, where position 0 is the slave
+ * closest to the master. Adding a slave in front of the chain and promoting the closest slave to
+ * master are O(1), and every slave is configured from a table built once, see
+ * {@link SpringConfigs#chain(int, SpringConfigs.ChainCurve)}, so that relinking the chain never
+ * allocates.
+ * <p>
+ * A chain created with {@link #createAnalytic(int, float, int, SpringConfigs.ChainCurve, SpringIdleTracker.Clock)}
+ * does not integrate its slaves. Each slave follows an {@link AnalyticSpring} evaluated at the time of
+ * the frame, and its rebound springs are only used to hold and report the position, see
+ * {@link #updateFollowers()}. The followers are handed back to their rebound springs when they leave
+ * the chain.
  */
-public class SpringChain2D implements SpringListener {
-    private final LinkedList<Spring> mXSprings = new LinkedList<>();
-    private final LinkedList<Spring> mYSprings = new LinkedList<>();
-
-    private Spring mXMasterSpring;
-    private Spring mYMasterSpring;
+public class SpringChain2D {
+    private final Spring[] mXSprings;
+    private final Spring[] mYSprings;
+    // Config of each chain position, shared with other chains using the same curve
+    private final SpringConfig[] mConfigs;
+    // Array index of chain position 0
+    private int mHead;
+    private int mSize;
 
-    private final int sDispWidth;
+    private int sDispWidth;
 
-    private static final int xDiff = Utils.dpToPx(4);
-    private static final int yDiff = Utils.dpToPx(1.7);
-    private int maxBubbleCount = 5;
+    private final int xDiff;
+    private final int yDiff;
 
     private boolean mDisplacementEnabled = true;
 
-    private SpringChain2D(int dispWidth, int maxBubbleCount) {
+    // Closed-form followers of each array index, only set in analytic mode
+    @Nullable
+    private final SpringIdleTracker.Clock mClock;
+    private final AnalyticSpring[] mXFollowers;
+    private final AnalyticSpring[] mYFollowers;
+
+    private SpringChain2D(int dispWidth, float density, int maxBubbleCount, @NonNull SpringConfigs.ChainCurve curve,
+                          @Nullable SpringIdleTracker.Clock clock) {
         this.sDispWidth = dispWidth;
-        this.maxBubbleCount = maxBubbleCount;
+        this.xDiff = (int) (4 * density + 0.5);
+        this.yDiff = (int) (1.7 * density + 0.5);
+        final int capacity = maxBubbleCount + 1;
+        mXSprings = new Spring[capacity];
+        mYSprings = new Spring[capacity];
+        mConfigs = SpringConfigs.chain(capacity, curve);
+        mClock = clock;
+        if (clock != null) {
+            mXFollowers = new AnalyticSpring[capacity];
+            mYFollowers = new AnalyticSpring[capacity];
+            for (int i = 0; i < capacity; i++) {
+                mXFollowers[i] = new AnalyticSpring(mConfigs[0]);
+                mYFollowers[i] = new AnalyticSpring(mConfigs[0]);
+            }
+        } else {
+            mXFollowers = null;
+            mYFollowers = null;
+        }
+    }
+
+    /**
+     * @param dispWidth      display width in pixels
+     * @param density        display density, used to convert the stacking offsets from dp
+     * @param maxBubbleCount maximum number of slaves in the chain
+     * @return new chain
+     */
+    public static SpringChain2D create(int dispWidth, float density, int maxBubbleCount) {
+        return create(dispWidth, density, maxBubbleCount, SpringConfigs.DEFAULT_CHAIN_CURVE);
+    }
+
+    /**
+     * @param dispWidth      display width in pixels
+     * @param density        display density, used to convert the stacking offsets from dp
+     * @param maxBubbleCount maximum number of slaves in the chain
+     * @param curve          spring config per chain position, computed once for the chain
+     * @return new chain
+     */
+    public static SpringChain2D create(int dispWidth, float density, int maxBubbleCount,
+                                       @NonNull SpringConfigs.ChainCurve curve) {
+        return new SpringChain2D(dispWidth, density, maxBubbleCount, curve, null);
     }
 
-    public static SpringChain2D create(Context context, int maxBubbleCount) {
-        final DisplayMetrics metrics = new DisplayMetrics();
-        WindowManager windowManager = (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
-        windowManager.getDefaultDisplay().getMetrics(metrics);
-        return new SpringChain2D(metrics.widthPixels, maxBubbleCount);
+    /**
+     * Creates a chain whose slaves follow the closed-form solution of their springs instead of being
+     * integrated every frame. {@link #updateFollowers()} has to be called once per spring loop.
+     *
+     * @param dispWidth      display width in pixels
+     * @param density        display density, used to convert the stacking offsets from dp
+     * @param maxBubbleCount maximum number of slaves in the chain
+     * @param curve          spring config per chain position, computed once for the chain
+     * @param clock          time source of the followers, in milliseconds
+     * @return new chain
+     */
+    public static SpringChain2D createAnalytic(int dispWidth, float density, int maxBubbleCount,
+                                               @NonNull SpringConfigs.ChainCurve curve,
+                                               @NonNull SpringIdleTracker.Clock clock) {
+        return new SpringChain2D(dispWidth, density, maxBubbleCount, curve, clock);
     }
 
-    public void setMasterSprings(@NonNull Spring xMaster, @NonNull Spring yMaster) {
-        mXMasterSpring = xMaster;
-        mYMasterSpring = yMaster;
-        mXMasterSpring.addListener(this);
-        mYMasterSpring.addListener(this);
+    /**
+     * @return true if the slaves are evaluated in closed form
+     */
+    public boolean isAnalytic() {
+        return mClock != null;
     }
 
     public void clear() {
-        mXSprings.clear();
-        mYSprings.clear();
+        for (int position = 0; position < mSize; position++) {
+            release(indexOf(position));
+        }
+        for (int i = 0; i < mXSprings.length; i++) {
+            mXSprings[i] = null;
+            mYSprings[i] = null;
+        }
+        mHead = 0;
+        mSize = 0;
+    }
+
+    /**
+     * @return number of slaves in the chain
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * @return maximum number of slaves the chain can hold
+     */
+    public int capacity() {
+        return mXSprings.length;
+    }
+
+    /**
+     * Adds the slave at the end of the chain, furthest from the master.
+     *
+     * @return true if added, false if the chain is full
+     */
+    public boolean addSlaveSprings(@NonNull Spring xSpring, @NonNull Spring ySpring) {
+        if (mSize == mXSprings.length) return false;
+        final int index = indexOf(mSize);
+        mXSprings[index] = xSpring;
+        mYSprings[index] = ySpring;
+        adopt(index);
+        mSize++;
+        configure(mSize - 1, mSize);
+        return true;
+    }
+
+    /**
+     * Adds the slave at the front of the chain, right behind the master. Used when the master is
+     * demoted by a new bubble. If the chain is full, the slave furthest from the master is dropped.
+     */
+    public void addFirstSlaveSprings(@NonNull Spring xSpring, @NonNull Spring ySpring) {
+        final int capacity = mXSprings.length;
+        if (mSize == capacity) {
+            final int last = indexOf(mSize - 1);
+            release(last);
+            mXSprings[last] = null;
+            mYSprings[last] = null;
+            mSize--;
+        }
+        mHead = (mHead - 1 + capacity) % capacity;
+        mXSprings[mHead] = xSpring;
+        mYSprings[mHead] = ySpring;
+        adopt(mHead);
+        mSize++;
+        configure(0, mSize);
+    }
+
+    /**
+     * Removes the slave owning the given x spring from wherever it is in the chain.
+     *
+     * @return true if the slave was part of the chain
+     */
+    public boolean removeSlaveSprings(@NonNull Spring xSpring) {
+        final int position = positionOf(xSpring);
+        if (position < 0) return false;
+        release(indexOf(position));
+        final int capacity = mXSprings.length;
+        if (position < mSize / 2) {
+            // Shift the slaves in front of it back by one
+            for (int i = position; i > 0; i--) {
+                move(indexOf(i - 1), indexOf(i));
+            }
+            mXSprings[mHead] = null;
+            mYSprings[mHead] = null;
+            mHead = (mHead + 1) % capacity;
+        } else {
+            // Shift the slaves behind it forward by one
+            for (int i = position; i < mSize - 1; i++) {
+                move(indexOf(i + 1), indexOf(i));
+            }
+            final int last = indexOf(mSize - 1);
+            mXSprings[last] = null;
+            mYSprings[last] = null;
+        }
+        mSize--;
+        configure(position, mSize);
+        return true;
     }
 
-    public void addSlaveSprings(@NonNull Spring xSpring, @NonNull Spring ySpring) {
-        if (mXSprings.size() <= maxBubbleCount) {
-            mXSprings.add(xSpring);
-            mYSprings.add(ySpring);
+    /**
+     * @return chain position of the slave owning the given x spring, or -1 if it is not in the chain
+     */
+    public int positionOf(@NonNull Spring xSpring) {
+        for (int position = 0; position < mSize; position++) {
+            if (mXSprings[indexOf(position)] == xSpring) return position;
+        }
+        return -1;
+    }
+
+    private int indexOf(int position) {
+        return (mHead + position) % mXSprings.length;
+    }
+
+    private void move(int from, int to) {
+        mXSprings[to] = mXSprings[from];
+        mYSprings[to] = mYSprings[from];
+        if (mClock != null) {
+            // Swapped rather than copied, so that every index keeps a follower of its own
+            final AnalyticSpring x = mXFollowers[to];
+            final AnalyticSpring y = mYFollowers[to];
+            mXFollowers[to] = mXFollowers[from];
+            mYFollowers[to] = mYFollowers[from];
+            mXFollowers[from] = x;
+            mYFollowers[from] = y;
+        }
+    }
+
+    /**
+     * Applies the position based config to the slaves in [from, to).
+     */
+    private void configure(int from, int to) {
+        final long now = mClock != null ? mClock.now() : 0;
+        for (int position = from; position < to; position++) {
+            final int index = indexOf(position);
+            mXSprings[index].setSpringConfig(mConfigs[position]);
+            mYSprings[index].setSpringConfig(mConfigs[position]);
+            if (mClock != null) {
+                mXFollowers[index].setSpringConfig(mConfigs[position], now);
+                mYFollowers[index].setSpringConfig(mConfigs[position], now);
+            }
         }
     }
 
-    @Override
-    public void onSpringUpdate(Spring spring) {
-        final int masterX = (int) mXMasterSpring.getCurrentValue();
-        final int masterY = (int) mYMasterSpring.getCurrentValue();
-        performGroupMove(masterX, masterY);
+    /**
+     * Takes over the motion of the springs that were just placed at the given index. The springs are
+     * stopped so that rebound no longer integrates them.
+     */
+    private void adopt(int index) {
+        if (mClock == null) return;
+        final long now = mClock.now();
+        adopt(mXSprings[index], mXFollowers[index], now);
+        adopt(mYSprings[index], mYFollowers[index], now);
+    }
+
+    private static void adopt(@NonNull Spring spring, @NonNull AnalyticSpring follower, long now) {
+        follower.setState(spring.getCurrentValue(), spring.getVelocity(), spring.getEndValue(), now);
+        // Also keeps the spring system running so that the follower is evaluated on the next loop
+        spring.setCurrentValue(spring.getCurrentValue(), true);
+    }
+
+    /**
+     * Hands the motion of the follower at the given index back to its springs, before they leave the
+     * chain.
+     */
+    private void release(int index) {
+        if (mClock == null) return;
+        final long now = mClock.now();
+        release(mXSprings[index], mXFollowers[index], now);
+        release(mYSprings[index], mYFollowers[index], now);
+    }
+
+    private static void release(@NonNull Spring spring, @NonNull AnalyticSpring follower, long now) {
+        spring.setCurrentValue(follower.getPosition(now), true)
+                .setVelocity(follower.getVelocity(now))
+                .setEndValue(follower.getEndValue());
+        follower.setState(0, 0, 0, now);
     }
 
     public void rest() {
-        Iterator lit = mXSprings.descendingIterator();
-        while (lit.hasNext()) {
-            final Spring s = (Spring) lit.next();
-            s.setAtRest();
+        final long now = mClock != null ? mClock.now() : 0;
+        for (int position = mSize - 1; position >= 0; position--) {
+            final int index = indexOf(position);
+            mXSprings[index].setAtRest();
+            mYSprings[index].setAtRest();
+            if (mClock != null) {
+                // Rest where the slave was last drawn
+                final double x = mXSprings[index].getCurrentValue();
+                final double y = mYSprings[index].getCurrentValue();
+                mXFollowers[index].setState(x, 0, x, now);
+                mYFollowers[index].setState(y, 0, y, now);
+            }
         }
-        lit = mYSprings.descendingIterator();
-        while (lit.hasNext()) {
-            final Spring s = (Spring) lit.next();
-            s.setAtRest();
+    }
+
+    /**
+     * Writes the position of every moving follower at the current time into its springs, which
+     * notifies their listeners as a regular spring update would. Does nothing unless the chain is
+     * {@link #isAnalytic() analytic}.
+     * <p>
+     * Meant to be called from {@link com.facebook.rebound.SpringSystemListener#onAfterIntegrate}
+     * ahead of the {@link SpringFrameBatcher}. Writing a position activates the springs, which keeps
+     * the spring system looping until the followers come to rest, but rebound skips them as they are
+     * held at rest.
+     *
+     * @return true if a follower is still moving
+     */
+    public boolean updateFollowers() {
+        if (mClock == null || mSize == 0) return false;
+        final long now = mClock.now();
+        boolean moving = false;
+        for (int position = 0; position < mSize; position++) {
+            final int index = indexOf(position);
+            moving |= follow(mXSprings[index], mXFollowers[index], now);
+            moving |= follow(mYSprings[index], mYFollowers[index], now);
+        }
+        return moving;
+    }
+
+    /**
+     * @return true if the follower is still moving
+     */
+    private static boolean follow(@NonNull Spring spring, @NonNull AnalyticSpring follower, long now) {
+        final boolean atRest = follower.isAtRest(now);
+        final double position = follower.getPosition(now);
+        if (position != spring.getCurrentValue()) {
+            spring.setCurrentValue(position, true);
         }
+        return !atRest;
     }
 
     public void performGroupMove(int masterX, int masterY) {
-        int displacement = 0;
-        Iterator lit = mXSprings.descendingIterator();
-        while (lit.hasNext()) {
-            final Spring s = (Spring) lit.next();
+        final long now = mClock != null ? mClock.now() : 0;
+        final boolean right = isRight(masterX);
+        int displacementX = 0;
+        int displacementY = 0;
+        for (int position = 0; position < mSize; position++) {
+            final int index = indexOf(position);
             if (mDisplacementEnabled) {
-                if (isRight(masterX)) {
-                    displacement += xDiff;
+                if (right) {
+                    displacementX += xDiff;
                 } else {
-                    displacement -= xDiff;
+                    displacementX -= xDiff;
                 }
+                displacementY += yDiff;
+            }
+            if (mClock != null) {
+                retarget(mXSprings[index], mXFollowers[index], masterX + displacementX, now);
+                retarget(mYSprings[index], mYFollowers[index], masterY + displacementY, now);
+            } else {
+                mXSprings[index].setEndValue(masterX + displacementX);
+                mYSprings[index].setEndValue(masterY + displacementY);
             }
-            s.setEndValue(masterX + displacement);
         }
+    }
 
-        displacement = 0;
-        lit = mYSprings.descendingIterator();
-        while (lit.hasNext()) {
-            final Spring s = (Spring) lit.next();
-            if (mDisplacementEnabled) {
-                displacement += yDiff;
-            }
-            s.setEndValue(masterY + displacement);
+    private static void retarget(@NonNull Spring spring, @NonNull AnalyticSpring follower, double endValue, long now) {
+        if (follower.setEndValue(endValue, now)) {
+            // The slave does not move yet, but the spring system has to run for the next frame
+            spring.setCurrentValue(follower.getPosition(now), true);
         }
     }
 
@@ -119,19 +383,11 @@ public class SpringChain2D implements SpringListener {
         return x > (sDispWidth / 2);
     }
 
-    @Override
-    public void onSpringAtRest(Spring spring) {
-
-    }
-
-    @Override
-    public void onSpringActivate(Spring spring) {
-
-    }
-
-    @Override
-    public void onSpringEndStateChange(Spring spring) {
-
+    /**
+     * Updates the display width used to pick the side the slaves stack on, such as after a rotation.
+     */
+    public void setDisplayWidth(int dispWidth) {
+        sDispWidth = dispWidth;
     }
 
     public void disableDisplacement() {
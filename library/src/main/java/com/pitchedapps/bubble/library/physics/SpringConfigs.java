@@ -1,9 +1,14 @@
 package com.pitchedapps.bubble.library.physics;
 
+import android.support.annotation.NonNull;
+
 import com.facebook.rebound.SpringConfig;
 
 /**
  * Created by Arun on 06/08/2016.
+ * <p>
+ * Tension and friction are per second, and rebound integrates them in fixed 1 ms steps, so every
+ * config moves along the same curve at any display or simulation rate, see {@link ThrottledSpringLooper}.
  */
 
 public class SpringConfigs {
@@ -14,4 +19,58 @@ public class SpringConfigs {
     public static final SpringConfig FLING = SpringConfig.fromOrigamiTensionAndFriction(50, 5);
     public static final SpringConfig DRAG = SpringConfig.fromOrigamiTensionAndFriction(0, 1.8);
     public static final SpringConfig SNAP = SpringConfig.fromOrigamiTensionAndFriction(100, 7);
+
+    /**
+     * Origami tension and friction of a slave spring, based on its position in the chain.
+     * Position 0 is the slave closest to the master.
+     */
+    public interface ChainCurve {
+        double tension(int position);
+
+        double friction(int position);
+    }
+
+    /**
+     * Slaves further from the master get more friction so that the chain trails behind it.
+     */
+    public static final ChainCurve DEFAULT_CHAIN_CURVE = new ChainCurve() {
+        @Override
+        public double tension(int position) {
+            return 90;
+        }
+
+        @Override
+        public double friction(int position) {
+            return 9 + ((position + 1) * 5);
+        }
+    };
+
+    // Shared configs of DEFAULT_CHAIN_CURVE, grown when a longer chain is requested
+    private static SpringConfig[] sDefaultChain = new SpringConfig[0];
+
+    /**
+     * Returns the configs of the first {@code size} chain positions. Configs of the default curve
+     * are shared between chains; any other curve is computed once per call.
+     * The returned array may be longer than {@code size} and must not be modified.
+     *
+     * @param size  number of chain positions
+     * @param curve tension and friction per position
+     * @return configs indexed by chain position
+     */
+    @NonNull
+    static synchronized SpringConfig[] chain(int size, @NonNull ChainCurve curve) {
+        if (curve != DEFAULT_CHAIN_CURVE) return computeChain(size, curve);
+        if (sDefaultChain.length < size) sDefaultChain = computeChain(size, curve);
+        return sDefaultChain;
+    }
+
+    @NonNull
+    private static SpringConfig[] computeChain(int size, @NonNull ChainCurve curve) {
+        final SpringConfig[] configs = new SpringConfig[size];
+        for (int position = 0; position < size; position++) {
+            configs[position] = SpringConfig.fromOrigamiTensionAndFriction(
+                    curve.tension(position), curve.friction(position));
+        }
+        return configs;
+    }
 }
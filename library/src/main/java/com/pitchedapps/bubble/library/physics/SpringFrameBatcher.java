@@ -0,0 +1,92 @@
+package com.pitchedapps.bubble.library.physics;
+
+import android.support.annotation.NonNull;
+
+import com.facebook.rebound.BaseSpringSystem;
+import com.facebook.rebound.SpringSystemListener;
+
+import java.util.ArrayList;
+
+/**
+ * Collects clients whose springs changed during a spring loop and notifies each of them exactly once
+ * after every spring of the system has advanced.
+ * <p>
+ * Every spring update used to be applied straight to the window, so a bubble moving on both axes was
+ * laid out twice per frame. The spring system is driven by the Choreographer, and touch input is
+ * dispatched before animation callbacks of the same frame, so deferring to
+ * {@link #onAfterIntegrate(BaseSpringSystem)} adds no latency.
+ */
+public class SpringFrameBatcher implements SpringSystemListener {
+
+    /**
+     * Receives a single callback per frame for any number of spring updates.
+     */
+    public interface Client {
+        void onSpringFrame();
+    }
+
+    private final ArrayList<Client> mDirtyClients = new ArrayList<>();
+    private final ArrayList<Client> mFlushingClients = new ArrayList<>();
+    // Number of spring updates that did not cause an extra flush
+    private long mCoalescedCount;
+    // Number of flushes delivered to clients
+    private long mFlushedCount;
+
+    /**
+     * Marks the client as needing an update at the end of the current spring loop.
+     *
+     * @param client client whose springs changed
+     */
+    public void markDirty(@NonNull Client client) {
+        if (mDirtyClients.contains(client)) {
+            mCoalescedCount++;
+        } else {
+            mDirtyClients.add(client);
+        }
+    }
+
+    @Override
+    public void onBeforeIntegrate(BaseSpringSystem springSystem) {
+
+    }
+
+    @Override
+    public void onAfterIntegrate(BaseSpringSystem springSystem) {
+        flush();
+    }
+
+    /**
+     * Notifies every dirty client once. Clients may mark themselves dirty again from their callback,
+     * in which case they are updated on the next loop.
+     */
+    public void flush() {
+        if (mDirtyClients.isEmpty()) return;
+        mFlushingClients.addAll(mDirtyClients);
+        mDirtyClients.clear();
+        final int size = mFlushingClients.size();
+        for (int i = 0; i < size; i++) {
+            mFlushingClients.get(i).onSpringFrame();
+        }
+        mFlushedCount += size;
+        mFlushingClients.clear();
+    }
+
+    /**
+     * @return number of spring updates merged into an already pending client update
+     */
+    public long getCoalescedUpdateCount() {
+        return mCoalescedCount;
+    }
+
+    /**
+     * @return number of client updates delivered
+     */
+    public long getFlushedUpdateCount() {
+        return mFlushedCount;
+    }
+
+    public void resetCounters() {
+        mCoalescedCount = 0;
+        mFlushedCount = 0;
+    }
+}
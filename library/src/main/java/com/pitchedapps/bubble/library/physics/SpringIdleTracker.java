@@ -0,0 +1,109 @@
+package com.pitchedapps.bubble.library.physics;
+
+import android.support.annotation.NonNull;
+
+import com.facebook.rebound.BaseSpringSystem;
+import com.facebook.rebound.SpringSystemListener;
+
+/**
+ * Follows a spring system between its active and idle states and accounts for the time spent
+ * active.
+ * <p>
+ * The spring system stops its looper, and with it every frame callback, once all springs are at
+ * rest. It starts again as soon as any spring is moved, whether by a touch or programmatically. This
+ * tracker reports both transitions so that the owner can release or restore anything else that
+ * should only run while bubbles move.
+ */
+public class SpringIdleTracker implements SpringSystemListener {
+
+    /**
+     * Notified on transitions between the active and idle states.
+     */
+    public interface Listener {
+        /**
+         * Called before the first frame of a spring system that was idle.
+         */
+        void onSpringsActive();
+
+        /**
+         * Called after the frame that brought the last spring to rest.
+         */
+        void onSpringsIdle();
+    }
+
+    /**
+     * Time source in milliseconds.
+     */
+    public interface Clock {
+        long now();
+    }
+
+    private final Clock mClock;
+    private final Listener mListener;
+
+    private boolean mActive;
+    // Start of the current active period
+    private long mActiveSince;
+    // Time spent active in completed periods
+    private long mActiveMillis;
+    private long mActivationCount;
+    private long mFrameCount;
+
+    public SpringIdleTracker(@NonNull Clock clock, @NonNull Listener listener) {
+        mClock = clock;
+        mListener = listener;
+    }
+
+    @Override
+    public void onBeforeIntegrate(BaseSpringSystem springSystem) {
+        mFrameCount++;
+        if (mActive) return;
+        mActive = true;
+        mActiveSince = mClock.now();
+        mActivationCount++;
+        mListener.onSpringsActive();
+    }
+
+    @Override
+    public void onAfterIntegrate(BaseSpringSystem springSystem) {
+        if (!mActive || !springSystem.getIsIdle()) return;
+        mActive = false;
+        mActiveMillis += mClock.now() - mActiveSince;
+        mListener.onSpringsIdle();
+    }
+
+    /**
+     * @return true while at least one spring is moving
+     */
+    public boolean isActive() {
+        return mActive;
+    }
+
+    /**
+     * @return total time spent active in milliseconds, including the current active period
+     */
+    public long getActiveMillis() {
+        return mActive ? mActiveMillis + mClock.now() - mActiveSince : mActiveMillis;
+    }
+
+    /**
+     * @return number of transitions from idle to active
+     */
+    public long getActivationCount() {
+        return mActivationCount;
+    }
+
+    /**
+     * @return number of frames integrated by the spring system
+     */
+    public long getFrameCount() {
+        return mFrameCount;
+    }
+
+    public void resetCounters() {
+        mActiveMillis = 0;
+        mActivationCount = 0;
+        mFrameCount = 0;
+        if (mActive) mActiveSince = mClock.now();
+    }
+}
@@ -0,0 +1,108 @@
+package com.pitchedapps.bubble.library.physics;
+
+import android.support.annotation.NonNull;
+
+import com.facebook.rebound.SpringLooper;
+
+/**
+ * Spring looper driven by display frames that can run the spring system at a lower rate than the
+ * display, by skipping frames.
+ * <p>
+ * Rebound integrates the elapsed time in fixed 1 ms steps and interpolates the last partial step,
+ * so a spring moves along the same curve whether it is looped at 30, 60 or 120 Hz; only the number
+ * of positions drawn changes. Throttling therefore saves work without changing how bubbles feel.
+ * <p>
+ * Subclasses schedule the display frames and report each one to {@link #doFrame(long)}.
+ */
+public abstract class ThrottledSpringLooper extends SpringLooper {
+
+    // A frame this close to the target interval is taken rather than skipped, as vsync jitters
+    private static final double FRAME_TOLERANCE_MILLIS = 4;
+
+    private final SpringIdleTracker.Clock mClock;
+
+    private boolean mStarted;
+    // True until the first frame after a start, which always loops so that a movement starts at once
+    private boolean mFirstFrame;
+    // Time of the last loop, or of the start for the first frame
+    private long mLastTime;
+    // Minimum time between loops, 0 to loop on every display frame
+    private double mMinIntervalMillis;
+    private long mSkippedFrameCount;
+
+    /**
+     * @param clock time source sharing its time base with the frame times passed to {@link #doFrame(long)}
+     */
+    protected ThrottledSpringLooper(@NonNull SpringIdleTracker.Clock clock) {
+        mClock = clock;
+    }
+
+    /**
+     * Caps the rate of the spring system. Takes effect on the next display frame.
+     *
+     * @param framesPerSecond maximum loops per second, or 0 to loop on every display frame
+     */
+    public void setSimulationRate(int framesPerSecond) {
+        mMinIntervalMillis = framesPerSecond > 0 ? 1000.0 / framesPerSecond : 0;
+    }
+
+    /**
+     * @return maximum loops per second, or 0 if the spring system loops on every display frame
+     */
+    public int getSimulationRate() {
+        return mMinIntervalMillis > 0 ? (int) Math.round(1000 / mMinIntervalMillis) : 0;
+    }
+
+    @Override
+    public void start() {
+        if (mStarted) return;
+        mStarted = true;
+        mFirstFrame = true;
+        mLastTime = mClock.now();
+        postFrame();
+    }
+
+    @Override
+    public void stop() {
+        mStarted = false;
+        cancelFrame();
+    }
+
+    /**
+     * Loops the spring system if enough time passed since the last loop, and asks for the next
+     * frame while springs are active.
+     *
+     * @param frameTimeMillis time of the display frame
+     */
+    protected void doFrame(long frameTimeMillis) {
+        if (!mStarted || mSpringSystem == null) return;
+        final long elapsed = frameTimeMillis - mLastTime;
+        if (!mFirstFrame && elapsed + FRAME_TOLERANCE_MILLIS < mMinIntervalMillis) {
+            mSkippedFrameCount++;
+        } else {
+            mFirstFrame = false;
+            mLastTime = frameTimeMillis;
+            // Frame times are vsync times, which can precede the start
+            mSpringSystem.loop(Math.max(0, elapsed));
+        }
+        // Looping may have brought every spring to rest and stopped the looper
+        if (mStarted) postFrame();
+    }
+
+    /**
+     * @return number of display frames on which the spring system did not loop
+     */
+    public long getSkippedFrameCount() {
+        return mSkippedFrameCount;
+    }
+
+    /**
+     * Schedules a call to {@link #doFrame(long)} on the next display frame.
+     */
+    protected abstract void postFrame();
+
+    /**
+     * Cancels the pending call to {@link #doFrame(long)}, if any.
+     */
+    protected abstract void cancelFrame();
+}
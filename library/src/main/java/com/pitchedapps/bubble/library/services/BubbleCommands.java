@@ -0,0 +1,130 @@
+package com.pitchedapps.bubble.library.services;
+
+import android.net.Uri;
+import android.support.annotation.ColorInt;
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Batch of bubble changes sent to a bound {@link BubbleService} in a single call, see
+ * {@link BubbleService.BubbleBinder#execute(BubbleCommands, Callback)}.
+ * <p>
+ * Commands are applied in order on the main thread. Consecutive adds are created together, so the
+ * spring chain is only linked once for all of them.
+ */
+public class BubbleCommands {
+
+    public static final int STATUS_APPLIED = 0;
+    // The command had nothing to do, such as adding a key that is already loaded
+    public static final int STATUS_IGNORED = 1;
+
+    public interface Callback {
+        /**
+         * Called on the main thread once every command was applied.
+         */
+        void onCommandsExecuted(@NonNull Result result);
+    }
+
+    public static final class Result {
+        private final int[] mStatuses;
+
+        Result(@NonNull int[] statuses) {
+            mStatuses = statuses;
+        }
+
+        public int size() {
+            return mStatuses.length;
+        }
+
+        /**
+         * @param index index of the command, in the order it was added
+         * @return {@link #STATUS_APPLIED} or {@link #STATUS_IGNORED}
+         */
+        public int getStatus(int index) {
+            return mStatuses[index];
+        }
+
+        public int getAppliedCount() {
+            int count = 0;
+            for (int status : mStatuses) {
+                if (status == STATUS_APPLIED) count++;
+            }
+            return count;
+        }
+    }
+
+    static final int ADD = 0;
+    static final int REMOVE = 1;
+    static final int SET_COLOR = 2;
+    static final int SET_ICON = 3;
+    static final int MOVE_TO_FRONT = 4;
+
+    static final class Command {
+        final int type;
+        @NonNull
+        final String key;
+        @ColorInt
+        final int color;
+        final Uri icon;
+
+        Command(int type, @NonNull String key, @ColorInt int color, Uri icon) {
+            this.type = type;
+            this.key = key;
+            this.color = color;
+            this.icon = icon;
+        }
+    }
+
+    private final List<Command> mCommands = new ArrayList<>();
+
+    /**
+     * Adds a bubble, which becomes the master.
+     */
+    public BubbleCommands add(@NonNull String key) {
+        mCommands.add(new Command(ADD, key, 0, null));
+        return this;
+    }
+
+    /**
+     * Closes a bubble, whether it is visible or queued.
+     */
+    public BubbleCommands remove(@NonNull String key) {
+        mCommands.add(new Command(REMOVE, key, 0, null));
+        return this;
+    }
+
+    /**
+     * Reveals a new color on a bubble.
+     */
+    public BubbleCommands setColor(@NonNull String key, @ColorInt int color) {
+        mCommands.add(new Command(SET_COLOR, key, color, null));
+        return this;
+    }
+
+    /**
+     * Loads the icon of a bubble off the main thread, see {@link BubbleService#loadBubbleIcon(String, Uri)}.
+     */
+    public BubbleCommands setIcon(@NonNull String key, @NonNull Uri icon) {
+        mCommands.add(new Command(SET_ICON, key, 0, icon));
+        return this;
+    }
+
+    /**
+     * Makes a visible or queued bubble the newest one, and therefore the master.
+     */
+    public BubbleCommands moveToFront(@NonNull String key) {
+        mCommands.add(new Command(MOVE_TO_FRONT, key, 0, null));
+        return this;
+    }
+
+    public int size() {
+        return mCommands.size();
+    }
+
+    @NonNull
+    List<Command> getCommands() {
+        return mCommands;
+    }
+}
@@ -13,8 +13,10 @@ import android.content.Intent;
 import android.content.IntentFilter;
 import android.content.res.Configuration;
 import android.net.Uri;
+import android.os.Binder;
 import android.os.Build;
 import android.os.IBinder;
+import android.os.PowerManager;
 import android.provider.Settings;
 import android.support.annotation.CallSuper;
 import android.support.annotation.ColorInt;
@@ -24,48 +26,326 @@ import android.support.annotation.StringRes;
 import android.support.v4.content.ContextCompat;
 import android.support.v4.content.LocalBroadcastManager;
 import android.support.v7.app.NotificationCompat;
+import android.util.DisplayMetrics;
 import android.util.Log;
+import android.view.WindowManager;
 import android.widget.Toast;
 
+import com.facebook.rebound.BaseSpringSystem;
 import com.facebook.rebound.Spring;
-import com.facebook.rebound.SpringConfig;
-import com.facebook.rebound.SpringSystem;
+import com.facebook.rebound.SpringSystemListener;
 import com.pitchedapps.bubble.library.R;
 import com.pitchedapps.bubble.library.logging.BLog;
+import com.pitchedapps.bubble.library.physics.DropTarget;
+import com.pitchedapps.bubble.library.physics.DropTargetIndex;
 import com.pitchedapps.bubble.library.physics.SpringChain2D;
+import com.pitchedapps.bubble.library.physics.SpringConfigs;
+import com.pitchedapps.bubble.library.physics.SpringFrameBatcher;
+import com.pitchedapps.bubble.library.physics.SpringIdleTracker;
 import com.pitchedapps.bubble.library.ui.Bubble;
+import com.pitchedapps.bubble.library.ui.BubbleCompositor;
 import com.pitchedapps.bubble.library.ui.BubbleContract;
+import com.pitchedapps.bubble.library.ui.BubbleRenderCache;
 import com.pitchedapps.bubble.library.ui.RemoveBubble;
+import com.pitchedapps.bubble.library.utils.ChoreographerSpringLooper;
 import com.pitchedapps.bubble.library.utils.Constants;
+import com.pitchedapps.bubble.library.utils.HandlerScheduler;
+import com.pitchedapps.bubble.library.utils.IconLoader;
+import com.pitchedapps.bubble.library.utils.Scheduler;
+import com.pitchedapps.bubble.library.utils.Utils;
 
+import java.io.File;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.ListIterator;
 import java.util.Map;
+import java.util.Set;
 
 public abstract class BubbleService<T extends Bubble> extends Service implements BubbleContract<T> {
 
     protected abstract int maxBubbleCount();
 
     /**
-     * Reference to all the bubbles created on screen. Ordered in the order of creation by using
-     * {@link LinkedHashMap}. The key must be unique
+     * Tension and friction of the slave springs per chain position. Only queried once when the
+     * service is created.
+     *
+     * @return curve used to configure the chain
      */
-    private final Map<String, T> mBubbleMap = new LinkedHashMap<>();
+    @NonNull
+    protected SpringConfigs.ChainCurve chainCurve() {
+        return SpringConfigs.DEFAULT_CHAIN_CURVE;
+    }
+
+    /**
+     * Reference to all the bubbles created on screen, by key. The key must be unique
+     */
+    private final Map<String, T> mBubbleMap = new HashMap<>();
+    /**
+     * The bubbles of {@link #mBubbleMap} in the order of creation, oldest first, so the master is
+     * always last. Unqueued bubbles are older than every visible one and go first.
+     */
+    private final ArrayDeque<T> mVisibleBubbles = new ArrayDeque<>();
+    /**
+     * Keys of the web heads waiting for a free spot in the chain, oldest first. Queued web heads are
+     * only inflated once they become visible.
+     */
+    private final Set<String> mQueuedKeys = new LinkedHashSet<>();
+    /**
+     * Detached web heads that keep their inflated content and springs, so that new keys can be
+     * bound to them instead of creating a new web head.
+     */
+    private final ArrayDeque<T> mRecycledBubbles = new ArrayDeque<>();
+    /**
+     * Drives {@link #mSpringSystem} from the display, at a rate set by {@link #updateSimulationRate()}.
+     */
+    private final ChoreographerSpringLooper mSpringLooper = new ChoreographerSpringLooper();
     /**
      * The base spring system to create our springs.
      */
-    private final SpringSystem mSpringSystem = SpringSystem.create();
+    private final BaseSpringSystem mSpringSystem = new BaseSpringSystem(mSpringLooper);
+    // Inputs of the simulation rate
+    private boolean mMasterTouched;
+    private boolean mPowerSaveMode;
+    /**
+     * Applies bubble positions once per frame after all springs of {@link #mSpringSystem} advanced.
+     */
+    private final SpringFrameBatcher mFrameBatcher = new SpringFrameBatcher();
+    // Delayed bubble behavior, posted to the main looper
+    private final Scheduler mScheduler = new HandlerScheduler();
+    // Handed to clients binding to the service
+    private final BubbleBinder mBinder = new BubbleBinder();
+    // True once onStartCommand was called, so that bubbles outlive bound clients
+    private boolean mStarted;
+    /**
+     * Reports when every spring of {@link #mSpringSystem} comes to rest and when one starts moving
+     * again, and accounts for the time bubbles spend moving.
+     */
+    private final SpringIdleTracker.Clock mClock = new SpringIdleTracker.Clock() {
+        @Override
+        public long now() {
+            return mScheduler.now();
+        }
+    };
+    /**
+     * Moves the slaves of an analytic chain once the springs of a loop have advanced.
+     */
+    private final SpringSystemListener mFollowerDriver = new SpringSystemListener() {
+        @Override
+        public void onBeforeIntegrate(BaseSpringSystem springSystem) {
+
+        }
+
+        @Override
+        public void onAfterIntegrate(BaseSpringSystem springSystem) {
+            if (mSpringChain2D != null) mSpringChain2D.updateFollowers();
+        }
+    };
+    private final SpringIdleTracker mIdleTracker = new SpringIdleTracker(mClock,
+            new SpringIdleTracker.Listener() {
+                @Override
+                public void onSpringsActive() {
+                    onBubblesActive();
+                }
+
+                @Override
+                public void onSpringsIdle() {
+                    onBubblesIdle();
+                }
+            });
     // Clubbed movement manager
     private SpringChain2D mSpringChain2D;
+    // Magnetic targets of dragged bubbles, starting with the remove view
+    private DropTargetIndex mDropTargets;
+    private DropTarget mRemoveTarget;
+    // Display size everything is laid out for, see onConfigurationChanged
+    private int mDispWidth, mDispHeight;
+    // Shared window for slave bubbles, only created if useCompositor() is enabled
+    @Nullable
+    private BubbleCompositor mCompositor;
+    // Rasterized bubbles, only created if useStaticRender() is enabled
+    @Nullable
+    private BubbleRenderCache mRenderCache;
+    // Decodes icons and extracts their colors off the main thread
+    @Nullable
+    private IconLoader mIconLoader;
+    // Journal of the web heads, restored when the service is restarted after a process kill
+    @Nullable
+    private BubbleSessionStore mSessionStore;
+    // Icons loaded while their web head was queued, applied once it is inflated again
+    private final Map<String, IconLoader.Result> mQueuedIcons = new HashMap<>();
+    // Upper bound of the bytes held by mRenderCache
+    private static final int RENDER_CACHE_BYTES = 4 * 1024 * 1024;
     // Max visible web heads is set 6 for performance reasons.
     public static final int MAX_VISIBLE_BUBBLE_COUNT = 6;
 
+    /**
+     * Opt in to drawing every slave bubble inside a single overlay window. Moving the chain then
+     * costs one window update per frame for the master rather than one per visible bubble.
+     * <p>
+     * The shared window covers the whole screen, so the system composes a screen-sized translucent
+     * layer while slaves are visible. That is cheaper than per-bubble window updates for long
+     * chains, but can cost more than it saves with one or two slaves on fill-rate bound devices.
+     *
+     * @return true to enable the compositor; false to give every bubble its own window
+     */
+    protected boolean useCompositor() {
+        return false;
+    }
+
+    /**
+     * Opt in to drawing bubbles as a single cached bitmap while they move, instead of their
+     * circle, reveal, indicator and favicon views. Bubbles with the same appearance share a
+     * bitmap, and reveal and close animations are still drawn live.
+     *
+     * @return true to enable static rendering
+     */
+    protected boolean useStaticRender() {
+        return false;
+    }
+
+    /**
+     * Opt in to moving slave bubbles along the closed-form solution of their springs, evaluated at
+     * the time of each frame, instead of integrating two rebound springs per slave every frame. The
+     * motion is the same within a fraction of a pixel, see {@link SpringChain2D#createAnalytic}.
+     *
+     * @return true to evaluate the slaves in closed form
+     */
+    protected boolean useAnalyticChain() {
+        return false;
+    }
+
+    /**
+     * Caps the rate of the bubble physics while no finger is on the master bubble, such as during
+     * a fling or while the chain settles. Springs follow the same curve at any rate, so this only
+     * lowers the number of positions drawn.
+     *
+     * @return loops per second, or 0 to follow the display
+     */
+    protected int coastingFrameRate() {
+        return 0;
+    }
+
+    /**
+     * Caps the rate of the bubble physics, drags included, while the device is in battery saver.
+     *
+     * @return loops per second, or 0 to follow the display
+     */
+    protected int powerSaveFrameRate() {
+        return 30;
+    }
+
+    /**
+     * Opt out of restoring web heads when the service is restarted after its process was killed.
+     * Web heads are then only kept in memory.
+     *
+     * @return true to persist the session
+     */
+    protected boolean persistSession() {
+        return true;
+    }
+
+    /**
+     * Maximum number of destroyed web heads kept for reuse. Recycled web heads are restyled through
+     * {@link Bubble#styleBubble(Context, String)} with their new key, so return 0 if
+     * {@link #createBubble(Intent)} sets up anything else on the web head.
+     *
+     * @return size of the recycle pool
+     */
+    protected int maxRecycledBubbleCount() {
+        return 3;
+    }
+
+    public BubbleService() {
+        // Followers write their positions before the batcher applies them, and keep the system active
+        mSpringSystem.addListener(mFollowerDriver);
+        mSpringSystem.addListener(mFrameBatcher);
+        // Added after the batcher so that idle is only reported once the last positions are applied
+        mSpringSystem.addListener(mIdleTracker);
+    }
+
+    /**
+     * Called when a bubble starts moving after all of them were at rest, either from a touch or a
+     * programmatic move.
+     */
+    protected void onBubblesActive() {
+        BLog.d("Bubbles active");
+    }
+
+    /**
+     * Called once every bubble is at rest. The spring system has stopped its frame callbacks at this
+     * point and no position updates are pending. Only one-shot timers may still be scheduled, such as
+     * the coast of the master, which keeps its delay.
+     */
+    @CallSuper
+    protected void onBubblesIdle() {
+        BLog.d("Bubbles idle after %d ms active in total", mIdleTracker.getActiveMillis());
+        if (mSessionStore != null && !mBubbleMap.isEmpty()) {
+            mSessionStore.recordMasterPosition(Bubble.getMasterX(), Bubble.getMasterY());
+        }
+    }
+
+    /**
+     * @return true if no bubble is moving
+     */
+    public boolean isIdle() {
+        return !mIdleTracker.isActive();
+    }
+
+    /**
+     * @return total time in milliseconds that bubbles spent moving since the service was created
+     */
+    public long getActiveMillis() {
+        return mIdleTracker.getActiveMillis();
+    }
+
+    /**
+     * @return number of times bubbles started moving after being at rest
+     */
+    public long getActivationCount() {
+        return mIdleTracker.getActivationCount();
+    }
+
+    /**
+     * @return number of spring frames computed since the service was created
+     */
+    public long getActiveFrameCount() {
+        return mIdleTracker.getFrameCount();
+    }
+
+    /**
+     * Local binder letting clients in the same process change many bubbles in a single call,
+     * without a {@link #startService(Intent)} round trip per bubble.
+     */
+    public class BubbleBinder extends Binder {
+
+        /**
+         * Applies the commands on the main thread, in order. May be called from any thread.
+         *
+         * @param commands commands to apply; later changes to the batch are not seen
+         * @param callback receives the status of every command once applied, on the main thread
+         */
+        public void execute(@NonNull BubbleCommands commands, @Nullable final BubbleCommands.Callback callback) {
+            final List<BubbleCommands.Command> batch = new ArrayList<>(commands.getCommands());
+            mScheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    final BubbleCommands.Result result = executeCommands(batch);
+                    if (callback != null) callback.onCommandsExecuted(result);
+                }
+            }, 0);
+        }
+    }
+
     @Override
     public IBinder onBind(Intent intent) {
-        return null;
+        return mBinder;
     }
 
     @Override
@@ -79,8 +359,35 @@ public abstract class BubbleService<T extends Bubble> extends Service implements
                 return;
             }
         }
-        mSpringChain2D = SpringChain2D.create(this, maxBubbleCount());
-        RemoveBubble.get(this);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            mPowerSaveMode = ((PowerManager) getSystemService(POWER_SERVICE)).isPowerSaveMode();
+        }
+        updateSimulationRate();
+        final DisplayMetrics metrics = new DisplayMetrics();
+        ((WindowManager) getSystemService(WINDOW_SERVICE)).getDefaultDisplay().getMetrics(metrics);
+        if (useAnalyticChain()) {
+            mSpringChain2D = SpringChain2D.createAnalytic(metrics.widthPixels, metrics.density, maxBubbleCount(),
+                    chainCurve(), mClock);
+        } else {
+            mSpringChain2D = SpringChain2D.create(metrics.widthPixels, metrics.density, maxBubbleCount(), chainCurve());
+        }
+        if (useCompositor()) mCompositor = new BubbleCompositor(this);
+        if (useStaticRender()) mRenderCache = new BubbleRenderCache(RENDER_CACHE_BYTES);
+        mIconLoader = new IconLoader();
+        mDispWidth = metrics.widthPixels;
+        mDispHeight = metrics.heightPixels;
+        mDropTargets = new DropTargetIndex(metrics.widthPixels, metrics.heightPixels, RemoveBubble.MAGNETISM_THRESHOLD);
+        mRemoveTarget = RemoveBubble.get(this).createDropTarget();
+        mDropTargets.add(mRemoveTarget);
+        if (persistSession()) {
+            mSessionStore = new BubbleSessionStore(new File(getFilesDir(), "bubbles_" + getClass().getSimpleName()));
+            mSessionStore.load(new BubbleSessionStore.Callback() {
+                @Override
+                public void onSessionLoaded(@NonNull BubbleSessionStore.Session session) {
+                    restoreSession(session);
+                }
+            });
+        }
 
         // bind to custom tab session
 //        bindToCustomTabSession();
@@ -96,6 +403,26 @@ public abstract class BubbleService<T extends Bubble> extends Service implements
         Bubble.cancelToast();
 
         removeWebHeads();
+        mQueuedKeys.clear();
+        Bubble.setQueuedCount(0);
+        if (mCompositor != null) {
+            mCompositor.destroySelf();
+            mCompositor = null;
+        }
+        if (mRenderCache != null) {
+            mRenderCache.clear();
+            mRenderCache = null;
+        }
+        if (mIconLoader != null) {
+            mIconLoader.shutdown();
+            mIconLoader = null;
+        }
+        if (mSessionStore != null) {
+            mSessionStore.clear();
+            mSessionStore.close();
+            mSessionStore = null;
+        }
+        mQueuedIcons.clear();
 
 //        PageExtractTasksManager.cancelAll(true);
 //        PageExtractTasksManager.unRegisterListener();
@@ -121,6 +448,7 @@ public abstract class BubbleService<T extends Bubble> extends Service implements
     @Override
     public int onStartCommand(Intent intent, int flags, int startId) {
         BLog.e("Start command");
+        mStarted = true;
         processIntent(intent);
         return START_STICKY;
     }
@@ -131,6 +459,21 @@ public abstract class BubbleService<T extends Bubble> extends Service implements
         activity.startService(serviceIntent);
     }
 
+    /**
+     * Creates all the given bubbles at once. The last key becomes the master and bubbles beyond
+     * {@link #MAX_VISIBLE_BUBBLE_COUNT} start queued. Prefer this over repeated
+     * {@link #createBubble(Activity, String, Class)} calls, as the chain is only linked once.
+     *
+     * @param activity     activity starting the service
+     * @param keys         unique bubble keys, oldest first
+     * @param serviceClass service hosting the bubbles
+     */
+    public static void createBubbles(Activity activity, List<String> keys, Class<? extends BubbleService> serviceClass) {
+        Intent serviceIntent = new Intent(activity, serviceClass);
+        serviceIntent.putStringArrayListExtra(Constants.EXTRA_KEY_BUBBLE_KEYS, new ArrayList<>(keys));
+        activity.startService(serviceIntent);
+    }
+
     public static void stop(Activity activity, Class<? extends BubbleService> serviceClass) {
         activity.stopService(new Intent(activity, serviceClass));
     }
@@ -156,7 +499,13 @@ public abstract class BubbleService<T extends Bubble> extends Service implements
     }
 
     private void processIntent(Intent intent) {
-        if (intent == null || intent.getDataString() == null) return; // don't do anything
+        if (intent == null) return;
+        final ArrayList<String> keys = intent.getStringArrayListExtra(Constants.EXTRA_KEY_BUBBLE_KEYS);
+        if (keys != null) {
+            addBubbles(keys);
+            return;
+        }
+        if (intent.getDataString() == null) return; // don't do anything
         if (!isAlreadyLoaded(intent.getDataString())) {
             addBubble(intent);
         } else {
@@ -172,34 +521,394 @@ public abstract class BubbleService<T extends Bubble> extends Service implements
         Toast.makeText(this, s, Toast.LENGTH_LONG).show();
     }
 
+    /**
+     * Recreates the web heads of a session that ended with the process being killed. Only the
+     * visible web heads are inflated, the rest is queued by key.
+     * <p>
+     * The session is read asynchronously, so web heads added since the service was created are
+     * newer than every restored one and keep their place, including the master.
+     */
+    private void restoreSession(@NonNull BubbleSessionStore.Session session) {
+        if (mSessionStore == null || session.isEmpty()) return;
+        final long start = System.nanoTime();
+        mSessionStore.restore(session);
+        if (session.hasMasterPosition && mBubbleMap.isEmpty()) {
+            Bubble.setMasterPosition(session.masterX, session.masterY);
+        }
+        addOlderBubbles(session.keys);
+        mSessionStore.compact();
+        BLog.d("Restored %d bubbles in %.2f ms", session.keys.size(), (System.nanoTime() - start) / 1e6);
+    }
+
+    @NonNull
+    private BubbleCommands.Result executeCommands(@NonNull List<BubbleCommands.Command> commands) {
+        final int[] statuses = new int[commands.size()];
+        if (mSpringChain2D == null) {
+            // Created without overlay permission
+            Arrays.fill(statuses, BubbleCommands.STATUS_IGNORED);
+            return new BubbleCommands.Result(statuses);
+        }
+        final List<String> adds = new ArrayList<>();
+        int addsStart = 0;
+        for (int i = 0; i < commands.size(); i++) {
+            final BubbleCommands.Command command = commands.get(i);
+            if (command.type == BubbleCommands.ADD) {
+                if (adds.isEmpty()) addsStart = i;
+                adds.add(command.key);
+                continue;
+            }
+            flushAdds(adds, addsStart, statuses);
+            statuses[i] = executeCommand(command) ? BubbleCommands.STATUS_APPLIED : BubbleCommands.STATUS_IGNORED;
+        }
+        flushAdds(adds, addsStart, statuses);
+        return new BubbleCommands.Result(statuses);
+    }
+
+    /**
+     * Creates the pending added keys in a single pass, see {@link #addBubbles(List)}.
+     */
+    private void flushAdds(@NonNull List<String> adds, int start, @NonNull int[] statuses) {
+        if (adds.isEmpty()) return;
+        final Set<String> seen = new HashSet<>();
+        for (int i = 0; i < adds.size(); i++) {
+            final String key = adds.get(i);
+            statuses[start + i] = isAlreadyLoaded(key) || !seen.add(key)
+                    ? BubbleCommands.STATUS_IGNORED : BubbleCommands.STATUS_APPLIED;
+        }
+        // Keep the service running once clients unbind
+        if (!mStarted) startService(new Intent(this, getClass()));
+        addBubbles(adds);
+        adds.clear();
+    }
+
+    /**
+     * @return true if the command changed anything
+     */
+    private boolean executeCommand(@NonNull BubbleCommands.Command command) {
+        final String key = command.key;
+        switch (command.type) {
+            case BubbleCommands.REMOVE:
+                return closeBubbleByKey(key);
+            case BubbleCommands.SET_COLOR: {
+                final T webHead = mBubbleMap.get(key);
+                if (webHead != null) webHead.setBubbleColor(command.color);
+                if (mSessionStore != null) mSessionStore.recordColor(key, command.color);
+                // Queued web heads get their color from the session once inflated
+                return webHead != null || mSessionStore != null && mQueuedKeys.contains(key);
+            }
+            case BubbleCommands.SET_ICON:
+                if (!mBubbleMap.containsKey(key) && !mQueuedKeys.contains(key)) return false;
+                loadBubbleIcon(key, command.icon);
+                return true;
+            case BubbleCommands.MOVE_TO_FRONT:
+                return moveToFront(key);
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Makes the web head of the key the newest one, and therefore the master.
+     *
+     * @return false if the key is not loaded or already the master
+     */
+    private boolean moveToFront(@NonNull String key) {
+        if (mQueuedKeys.remove(key)) {
+            onQueueChanged();
+            if (mSessionStore != null) mSessionStore.recordMoveToEnd(key);
+            addBubbles(Collections.singletonList(key));
+            return true;
+        }
+        final T webHead = mBubbleMap.get(key);
+        if (webHead == null || webHead.isMaster()) return false;
+        final T oldMaster = getNewestBubble();
+        mSpringChain2D.removeSlaveSprings(webHead.getXSpring());
+        mVisibleBubbles.remove(webHead);
+        mVisibleBubbles.addLast(webHead);
+        if (oldMaster != null) {
+            oldMaster.setMaster(false);
+            mSpringChain2D.addFirstSlaveSprings(oldMaster.getXSpring(), oldMaster.getYSpring());
+        }
+        webHead.setMaster(true);
+        mSpringChain2D.enableDisplacement();
+        webHead.goToMasterTouchDownPoint();
+        if (mSessionStore != null) mSessionStore.recordMoveToEnd(key);
+        return true;
+    }
+
     private void addBubble(@NonNull final Intent intent) {
 //        PageExtractTasksManager.startExtraction(webHeadUrl);
-        mSpringChain2D.clear();
-        final T newWebHead = createBubble(intent);
-        mSpringChain2D.setMasterSprings(newWebHead.getXSpring(), newWebHead.getYSpring());
-
-        int index = mBubbleMap.values().size();
-        for (T oldWebHead : mBubbleMap.values()) {
-            oldWebHead.setMaster(false);
-            if (shouldQueue(index + 1)) {
-                oldWebHead.setInQueue(true);
-            } else {
-                oldWebHead.setSpringConfig(SpringConfig.fromOrigamiTensionAndFriction(90, 9 + (index * 5)));
-                mSpringChain2D.addSlaveSprings(oldWebHead.getXSpring(), oldWebHead.getYSpring());
+        final T newWebHead = obtainBubble(intent);
+        if (mSessionStore != null) mSessionStore.recordAdd(intent.getDataString());
+
+        final T oldMaster = getNewestBubble();
+        if (oldMaster != null) {
+            oldMaster.setMaster(false);
+            if (mSpringChain2D.size() >= maxVisibleSlaveCount()) {
+                queueOldestVisibleBubble(false);
+                onQueueChanged();
             }
-            index--;
+            mSpringChain2D.addFirstSlaveSprings(oldMaster.getXSpring(), oldMaster.getYSpring());
         }
         mSpringChain2D.rest();
 
         newWebHead.reveal();
         mBubbleMap.put(intent.getDataString(), newWebHead);
+        mVisibleBubbles.addLast(newWebHead);
+
+    }
+
+    /**
+     * Adds every key that is not loaded yet, then links the spring chain in a single pass. Keys that
+     * would not be visible go straight to the queue without inflating a web head.
+     *
+     * @param keys bubble keys, oldest first
+     */
+    private void addBubbles(@NonNull final List<String> keys) {
+        final Set<String> newKeys = new LinkedHashSet<>(keys);
+        final Iterator<String> it = newKeys.iterator();
+        while (it.hasNext()) {
+            if (isAlreadyLoaded(it.next())) it.remove();
+        }
+        if (newKeys.isEmpty()) return;
+
+        int toQueue = mBubbleMap.size() + newKeys.size() - (maxVisibleSlaveCount() + 1);
+        // Visible web heads are older than every new one, so they are queued first. The current
+        // master is replaced by a new web head anyway, so it may be queued as well.
+        while (toQueue > 0 && queueOldestVisibleBubble(true)) {
+            toQueue--;
+        }
+        final List<T> newWebHeads = new ArrayList<>(Math.min(newKeys.size(), MAX_VISIBLE_BUBBLE_COUNT));
+        T master = getNewestBubble();
+        for (String key : newKeys) {
+            if (mSessionStore != null) mSessionStore.recordAdd(key);
+            if (toQueue-- > 0) {
+                mQueuedKeys.add(key);
+                continue;
+            }
+            final T webHead = inflateBubble(key);
+            if (master != null) master.setMaster(false);
+            master = webHead;
+            mBubbleMap.put(key, webHead);
+            mVisibleBubbles.addLast(webHead);
+            newWebHeads.add(webHead);
+        }
+        onQueueChanged();
+
+        relinkSpringChain(master);
+        mSpringChain2D.rest();
+        for (T webHead : newWebHeads) {
+            webHead.reveal();
+        }
+    }
+
+    /**
+     * Adds every key that is not loaded yet as older than all loaded ones. Keys that do not fit in
+     * the chain go to the front of the queue, and the others are linked behind the visible web
+     * heads, which keep their order and master.
+     *
+     * @param keys bubble keys, oldest first
+     */
+    private void addOlderBubbles(@NonNull final List<String> keys) {
+        final List<String> olderKeys = new ArrayList<>(keys.size());
+        for (String key : new LinkedHashSet<>(keys)) {
+            if (!isAlreadyLoaded(key)) olderKeys.add(key);
+        }
+        if (olderKeys.isEmpty()) return;
+
+        // Keys are only queued once the chain is full, so the room left is zero if any are
+        final int room = maxVisibleSlaveCount() + 1 - mVisibleBubbles.size();
+        final int queueCount = Math.max(0, olderKeys.size() - room);
+        if (queueCount > 0) {
+            final List<String> newerQueued = new ArrayList<>(mQueuedKeys);
+            mQueuedKeys.clear();
+            mQueuedKeys.addAll(olderKeys.subList(0, queueCount));
+            mQueuedKeys.addAll(newerQueued);
+            onQueueChanged();
+        }
+        final List<T> newWebHeads = new ArrayList<>(olderKeys.size() - queueCount);
+        // Newest first, each one goes in front of the visible web heads
+        for (int i = olderKeys.size() - 1; i >= queueCount; i--) {
+            final String key = olderKeys.get(i);
+            final T webHead = inflateBubble(key);
+            if (!mVisibleBubbles.isEmpty()) webHead.setMaster(false);
+            mBubbleMap.put(key, webHead);
+            mVisibleBubbles.addFirst(webHead);
+            newWebHeads.add(webHead);
+        }
+        if (newWebHeads.isEmpty()) return;
+
+        relinkSpringChain(mVisibleBubbles.getLast());
+        mSpringChain2D.rest();
+        for (T webHead : newWebHeads) {
+            webHead.reveal();
+        }
+    }
+
+    /**
+     * Links every slave behind the given master, newest first.
+     *
+     * @param master current master web head
+     */
+    private void relinkSpringChain(@NonNull T master) {
+        mSpringChain2D.clear();
+        mSpringChain2D.enableDisplacement();
+        for (T webHead : mVisibleBubbles) {
+            if (webHead != master) {
+                mSpringChain2D.addFirstSlaveSprings(webHead.getXSpring(), webHead.getYSpring());
+            }
+        }
+    }
+
+    /**
+     * Creates the web head of a key, as if it was requested through
+     * {@link #createBubble(Activity, String, Class)}.
+     */
+    @NonNull
+    private T inflateBubble(@NonNull String key) {
+        final T webHead = obtainBubble(new Intent().setData(Uri.parse(key)));
+        final Integer color = mSessionStore != null ? mSessionStore.getColor(key) : null;
+        if (color != null) webHead.setBubbleColor(color);
+        final IconLoader.Result icon = mQueuedIcons.remove(key);
+        if (icon != null) webHead.setFavicon(icon);
+        return webHead;
+    }
 
+    /**
+     * Rebinds a recycled web head to the key of the intent, or creates a new one if none is
+     * available.
+     */
+    @NonNull
+    private T obtainBubble(@NonNull Intent intent) {
+        final T recycled = mRecycledBubbles.poll();
+        if (recycled == null) return createBubble(intent);
+        recycled.rebind(intent.getDataString());
+        return recycled;
+    }
+
+    /**
+     * Keeps a detached web head for reuse if the pool has room, and releases its springs otherwise.
+     */
+    private void recycleBubble(@NonNull T webHead) {
+        if (mRecycledBubbles.size() < maxRecycledBubbleCount()) {
+            mRecycledBubbles.add(webHead);
+        } else {
+            webHead.destroySprings();
+        }
     }
 
     protected abstract T createBubble(@NonNull final Intent intent);
 
-    private boolean shouldQueue(int index) {
-        return index > MAX_VISIBLE_BUBBLE_COUNT;
+    /**
+     * @return number of slaves that may follow the master; older web heads are queued
+     */
+    private int maxVisibleSlaveCount() {
+        return Math.min(MAX_VISIBLE_BUBBLE_COUNT - 1, mSpringChain2D.capacity());
+    }
+
+    /**
+     * @return the most recently added web head, which is always the master
+     */
+    @Nullable
+    private T getNewestBubble() {
+        return mVisibleBubbles.peekLast();
+    }
+
+    /**
+     * Moves the oldest visible web head back into the queue. Its web head is detached and only the
+     * key is kept.
+     *
+     * @param includeMaster true if the master may be queued when no slave is left
+     * @return true if a web head was queued
+     */
+    private boolean queueOldestVisibleBubble(boolean includeMaster) {
+        final Iterator<T> it = mVisibleBubbles.iterator();
+        while (it.hasNext()) {
+            final T webHead = it.next();
+            if (includeMaster || !webHead.isMaster()) {
+                mSpringChain2D.removeSlaveSprings(webHead.getXSpring());
+                it.remove();
+                mBubbleMap.remove(webHead.getKey());
+                webHead.detach();
+                mQueuedKeys.add(webHead.getKey());
+                recycleBubble(webHead);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Inflates the most recent queued web head if there is room for it. It becomes the master if
+     * no other web head is left, and is otherwise added at the end of the chain since queued web
+     * heads are always the oldest ones.
+     */
+    private void unqueueNewestQueuedBubble() {
+        if (mQueuedKeys.isEmpty() || mSpringChain2D.size() >= maxVisibleSlaveCount()) return;
+        String key = null;
+        for (String queued : mQueuedKeys) {
+            key = queued;
+        }
+        mQueuedKeys.remove(key);
+        onQueueChanged();
+
+        final T webHead = inflateBubble(key);
+        if (mBubbleMap.isEmpty()) {
+            mSpringChain2D.enableDisplacement();
+        } else {
+            webHead.setMaster(false);
+            mSpringChain2D.addSlaveSprings(webHead.getXSpring(), webHead.getYSpring());
+        }
+        mBubbleMap.put(key, webHead);
+        // Keep the creation order, the unqueued web head is older than all visible ones
+        mVisibleBubbles.addFirst(webHead);
+        webHead.reveal();
+    }
+
+    /**
+     * Loads the icon of a web head from a content or file uri. Decoding and color extraction run on
+     * a worker thread, and the web head reveals the icon color once done.
+     *
+     * @param key key of the web head
+     * @param uri encoded icon
+     */
+    public void loadBubbleIcon(@NonNull String key, @NonNull Uri uri) {
+        loadBubbleIcon(key, IconLoader.fromUri(getContentResolver(), uri));
+    }
+
+    /**
+     * Same as {@link #loadBubbleIcon(String, Uri)} for an icon already in memory, such as one
+     * downloaded by the host app.
+     *
+     * @param key  key of the web head
+     * @param data encoded icon
+     */
+    public void loadBubbleIcon(@NonNull String key, @NonNull byte[] data) {
+        loadBubbleIcon(key, IconLoader.fromBytes(data));
+    }
+
+    private void loadBubbleIcon(@NonNull String key, @NonNull IconLoader.Source source) {
+        if (mIconLoader == null) return;
+        final T webHead = mBubbleMap.get(key);
+        final int size = webHead != null ? webHead.getFaviconSize() : Utils.dpToPx(Bubble.FAVICON_SIZE_DP);
+        mIconLoader.load(key, source, size, new IconLoader.Callback() {
+            @Override
+            public void onIconLoaded(@NonNull IconLoader.Result result) {
+                final T loaded = mBubbleMap.get(result.key);
+                if (result.hasColor && mSessionStore != null) {
+                    mSessionStore.recordColor(result.key, result.color);
+                }
+                if (loaded != null) {
+                    loaded.setFavicon(result);
+                } else if (mQueuedKeys.contains(result.key)) {
+                    mQueuedIcons.put(result.key, result);
+                }
+            }
+        });
+    }
+
+    private void onQueueChanged() {
+        Bubble.setQueuedCount(mQueuedKeys.size());
     }
 
 //    @Override
@@ -253,15 +962,23 @@ public abstract class BubbleService<T extends Bubble> extends Service implements
 
     //Check if unique key is already used
     private boolean isAlreadyLoaded(@Nullable String key) {
-        return key == null || mBubbleMap.containsKey(key);
+        return key == null || mBubbleMap.containsKey(key) || mQueuedKeys.contains(key);
     }
 
     private void removeWebHeads() {
         for (Bubble webhead : mBubbleMap.values()) {
-            if (webhead != null) webhead.destroySelf(false);
+            if (webhead != null) {
+                webhead.destroySelf(false);
+                webhead.destroySprings();
+            }
+        }
+        for (Bubble webhead : mRecycledBubbles) {
+            webhead.destroySprings();
         }
+        mRecycledBubbles.clear();
         // Since no callback is received clear the map manually.
         mBubbleMap.clear();
+        mVisibleBubbles.clear();
         BLog.d("WebHeads: %d", mBubbleMap.size());
     }
 
@@ -270,52 +987,20 @@ public abstract class BubbleService<T extends Bubble> extends Service implements
         List<Animator> animators = new LinkedList<>();
         for (Bubble webhead : mBubbleMap.values()) {
             animators.add(webhead.getRevealAnimator(webHeadColor));
+            if (mSessionStore != null) mSessionStore.recordColor(webhead.getKey(), webHeadColor);
         }
         animatorSet.playTogether(animators);
         animatorSet.start();
     }
 
-    private void updateSpringChain() {
-        mSpringChain2D.rest();
-        mSpringChain2D.clear();
-        mSpringChain2D.enableDisplacement();
-        // Index that is used to differentiate spring config
-        int springChainIndex = mBubbleMap.values().size();
-        // Index that is used to determine if the web hed should be in queue.
-        int index = mBubbleMap.values().size();
-        for (Bubble webHead : mBubbleMap.values()) {
-            if (webHead != null) {
-                if (webHead.isMaster()) {
-                    // Master will never be in queue, so no check is made.
-                    mSpringChain2D.setMasterSprings(webHead.getXSpring(), webHead.getYSpring());
-                } else {
-                    if (shouldQueue(index)) {
-                        webHead.setInQueue(true);
-                    } else {
-                        webHead.setInQueue(false);
-                        // We should add the springs to our chain only if the web head is active
-                        webHead.setSpringConfig(SpringConfig.fromOrigamiTensionAndFriction(90, 9 + (springChainIndex * 5)));
-                        mSpringChain2D.addSlaveSprings(webHead.getXSpring(), webHead.getYSpring());
-                    }
-                    springChainIndex--;
-                }
-                index--;
-            }
-        }
-    }
-
     private void selectNextMaster() {
-        final ListIterator<String> it = new ArrayList<>(mBubbleMap.keySet()).listIterator(mBubbleMap.size());
-        //noinspection LoopStatementThatDoesntLoop
-        while (it.hasPrevious()) {
-            final String key = it.previous();
-            final Bubble toBeMaster = mBubbleMap.get(key);
-            if (toBeMaster != null) {
-                toBeMaster.setMaster(true);
-                updateSpringChain();
-                toBeMaster.goToMasterTouchDownPoint();
-            }
-            break;
+        final T toBeMaster = getNewestBubble();
+        if (toBeMaster != null) {
+            // The newest slave is first in the chain, so unlinking it is O(1)
+            mSpringChain2D.removeSlaveSprings(toBeMaster.getXSpring());
+            toBeMaster.setMaster(true);
+            mSpringChain2D.enableDisplacement();
+            toBeMaster.goToMasterTouchDownPoint();
         }
     }
 
@@ -335,10 +1020,15 @@ public abstract class BubbleService<T extends Bubble> extends Service implements
     @Override
     @CallSuper
     public void onBubbleDestroyed(@NonNull Bubble bubble, boolean isLastBubble) {
+        final boolean wasMaster = bubble.isMaster();
         bubble.setMaster(false);
-        mBubbleMap.remove(bubble.getKey());
+        final T webHead = mBubbleMap.remove(bubble.getKey());
+        if (webHead != null) mVisibleBubbles.remove(webHead);
+        mSpringChain2D.removeSlaveSprings(bubble.getXSpring());
+        if (mSessionStore != null) mSessionStore.recordRemove(bubble.getKey());
+        if (webHead != null) recycleBubble(webHead);
 
-        if (isLastBubble) {
+        if (mBubbleMap.isEmpty() && mQueuedKeys.isEmpty()) {
             RemoveBubble.get(this).destroyAnimator(new Runnable() {
                 @Override
                 public void run() {
@@ -346,7 +1036,8 @@ public abstract class BubbleService<T extends Bubble> extends Service implements
                 }
             });
         } else {
-            selectNextMaster();
+            if (wasMaster) selectNextMaster();
+            unqueueNewestQueuedBubble();
             // Now that this web head is destroyed, with this web head as the reference prepare the
             // other urls
 //            prepareNextSetOfUrls(bubble.getUrl());
@@ -365,6 +1056,77 @@ public abstract class BubbleService<T extends Bubble> extends Service implements
         return mSpringSystem.createSpring();
     }
 
+    @NonNull
+    @Override
+    public SpringFrameBatcher getFrameBatcher() {
+        return mFrameBatcher;
+    }
+
+    @Nullable
+    @Override
+    public BubbleCompositor getCompositor() {
+        return mCompositor;
+    }
+
+    @Nullable
+    @Override
+    public BubbleRenderCache getRenderCache() {
+        return mRenderCache;
+    }
+
+    @NonNull
+    @Override
+    public Scheduler getScheduler() {
+        return mScheduler;
+    }
+
+    @NonNull
+    @Override
+    public DropTargetIndex getDropTargets() {
+        return mDropTargets;
+    }
+
+    /**
+     * Adds a magnetic target, such as a pin or share zone, that dragged bubbles lock onto. Looking
+     * up targets is constant time however many are registered.
+     *
+     * @param target target to add
+     */
+    public void registerDropTarget(@NonNull DropTarget target) {
+        mDropTargets.add(target);
+    }
+
+    public void unregisterDropTarget(@NonNull DropTarget target) {
+        mDropTargets.remove(target);
+    }
+
+    @Override
+    public void onMasterTouchDown() {
+        mMasterTouched = true;
+        updateSimulationRate();
+    }
+
+    @Override
+    public void onMasterTouchUp() {
+        mMasterTouched = false;
+        updateSimulationRate();
+    }
+
+    private void updateSimulationRate() {
+        final int rate;
+        if (mPowerSaveMode) {
+            rate = powerSaveFrameRate();
+        } else if (!mMasterTouched) {
+            rate = coastingFrameRate();
+        } else {
+            rate = 0;
+        }
+        if (rate != mSpringLooper.getSimulationRate()) {
+            BLog.d("Bubble physics at %s", rate > 0 ? rate + " Hz" : "display rate");
+            mSpringLooper.setSimulationRate(rate);
+        }
+    }
+
     @Override
     public void onMasterLockedToRemove() {
         mSpringChain2D.disableDisplacement();
@@ -394,18 +1156,58 @@ public abstract class BubbleService<T extends Bubble> extends Service implements
 //        ContextActivityHelper.open(this, webSites);
     }
 
-    private void closeBubbleByKey(String key) {
+    /**
+     * @return true if the key was loaded
+     */
+    private boolean closeBubbleByKey(String key) {
+        if (mQueuedKeys.remove(key)) {
+            mQueuedIcons.remove(key);
+            if (mSessionStore != null) mSessionStore.recordRemove(key);
+            onQueueChanged();
+            return true;
+        }
         final Bubble bubble = mBubbleMap.get(key);
         if (bubble != null) {
             bubble.destroySelf(true);
+            return true;
         }
+        return false;
     }
 
     @Override
     public void onConfigurationChanged(Configuration newConfig) {
         super.onConfigurationChanged(newConfig);
         BLog.d(newConfig.toString());
-        // TODO handle bubble positions after orientations change.
+        if (mSpringChain2D == null) return;
+        final DisplayMetrics metrics = new DisplayMetrics();
+        ((WindowManager) getSystemService(WINDOW_SERVICE)).getDefaultDisplay().getMetrics(metrics);
+        // Locale, font scale or night mode changes leave the layout alone
+        if (metrics.widthPixels == mDispWidth && metrics.heightPixels == mDispHeight) return;
+        onDisplayChanged(metrics.widthPixels, metrics.heightPixels);
+    }
+
+    /**
+     * Lays everything out again for a display of the given size, once per change. The geometry
+     * shared by all bubbles is recomputed first, then the master animates to the same relative
+     * position and the slaves follow it, so the stack moves in a single animation instead of every
+     * bubble correcting itself against stale bounds.
+     */
+    private void onDisplayChanged(int width, int height) {
+        BLog.d("Display changed from %dx%d to %dx%d", mDispWidth, mDispHeight, width, height);
+        mDispWidth = width;
+        mDispHeight = height;
+        mSpringChain2D.setDisplayWidth(width);
+        final RemoveBubble removeBubble = RemoveBubble.get(this);
+        removeBubble.onDisplayChanged(width, height);
+        mDropTargets.resize(width, height);
+        mDropTargets.move(mRemoveTarget, removeBubble.getCenterX(), removeBubble.getCenterY());
+        Bubble.updateScreenBounds(width, height);
+        for (T bubble : mBubbleMap.values()) {
+            bubble.onDisplayChanged(width, height);
+        }
+        for (T bubble : mRecycledBubbles) {
+            bubble.onDisplayChanged(width, height);
+        }
     }
 
     private void hideRemoveView() {
@@ -419,13 +1221,28 @@ public abstract class BubbleService<T extends Bubble> extends Service implements
         filter.addAction(Constants.ACTION_CLOSE_WEBHEAD_BY_URL);
         LocalBroadcastManager.getInstance(this).registerReceiver(mLocalReceiver, filter);
         registerReceiver(mStopServiceReceiver, new IntentFilter(Constants.ACTION_STOP_WEBHEAD_SERVICE));
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            registerReceiver(mPowerSaveReceiver, new IntentFilter(PowerManager.ACTION_POWER_SAVE_MODE_CHANGED));
+        }
     }
 
     private void unregisterReceivers() {
         LocalBroadcastManager.getInstance(this).unregisterReceiver(mLocalReceiver);
         unregisterReceiver(mStopServiceReceiver);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            unregisterReceiver(mPowerSaveReceiver);
+        }
     }
 
+    private final BroadcastReceiver mPowerSaveReceiver = new BroadcastReceiver() {
+        @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            mPowerSaveMode = ((PowerManager) getSystemService(POWER_SERVICE)).isPowerSaveMode();
+            updateSimulationRate();
+        }
+    };
+
     private final BroadcastReceiver mLocalReceiver = new BroadcastReceiver() {
         @Override
         public void onReceive(Context context, Intent intent) {
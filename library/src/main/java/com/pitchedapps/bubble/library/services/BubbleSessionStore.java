@@ -0,0 +1,416 @@
+package com.pitchedapps.bubble.library.services;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.ColorInt;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.pitchedapps.bubble.library.logging.BLog;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Journal of the bubbles of a service, so that they can be restored after the process was killed.
+ * <p>
+ * Every change is appended as a small record on a single writer thread. Once the journal holds too
+ * many records, the live state is written to a {@link BubbleSnapshot} and the journal starts over,
+ * so a restore maps the snapshot and only replays the changes made since. Keys are kept oldest first,
+ * which is all that is needed to restore the queue, as queued bubbles are always the oldest ones.
+ * Styles are derived from the key again when bubbles are restored, so only colors changed after
+ * styling are recorded.
+ */
+class BubbleSessionStore {
+
+    /**
+     * Restored state of a session.
+     */
+    static final class Session {
+        // Bubble keys, oldest first
+        final List<String> keys;
+        // Colors recorded in the journal, on top of the ones in the snapshot
+        final Map<String, Integer> colors;
+        final BubbleSnapshot snapshot;
+        // Snapshot entry of each key that was not removed since
+        final Map<String, Integer> snapshotIndex;
+        final boolean hasMasterPosition;
+        final int masterX, masterY;
+
+        Session(@NonNull List<String> keys, @NonNull Map<String, Integer> colors,
+                @NonNull BubbleSnapshot snapshot, @NonNull Map<String, Integer> snapshotIndex,
+                boolean hasMasterPosition, int masterX, int masterY) {
+            this.keys = keys;
+            this.colors = colors;
+            this.snapshot = snapshot;
+            this.snapshotIndex = snapshotIndex;
+            this.hasMasterPosition = hasMasterPosition;
+            this.masterX = masterX;
+            this.masterY = masterY;
+        }
+
+        boolean isEmpty() {
+            return keys.isEmpty();
+        }
+    }
+
+    interface Callback {
+        /**
+         * Called on the main thread with the session read from disk.
+         */
+        void onSessionLoaded(@NonNull Session session);
+    }
+
+    static final int MAGIC = 0x42424C53;
+    static final int VERSION = 1;
+
+    static final byte RECORD_ADD = 1;
+    static final byte RECORD_REMOVE = 2;
+    static final byte RECORD_COLOR = 3;
+    static final byte RECORD_MASTER = 4;
+
+    // Records tolerated on top of the live state before a snapshot is written
+    private static final int COMPACT_SLACK = 64;
+
+    private final File mFile;
+    private final File mSnapshotFile;
+    private final ExecutorService mWriter = Executors.newSingleThreadExecutor();
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    // Only used on the writer thread
+    private DataOutputStream mOut;
+
+    // Live state mirrored on the main thread, used to rewrite the journal
+    private final Set<String> mKeys = new LinkedHashSet<>();
+    private final Map<String, Integer> mColors = new HashMap<>();
+    // Snapshot the session was restored from, colors not recorded since are read from it lazily
+    private BubbleSnapshot mSnapshot = BubbleSnapshot.EMPTY;
+    private final Map<String, Integer> mSnapshotIndex = new HashMap<>();
+    private boolean mHasMasterPosition;
+    private int mMasterX, mMasterY;
+    private int mRecordCount;
+
+    BubbleSessionStore(@NonNull File file) {
+        mFile = file;
+        mSnapshotFile = new File(file.getPath() + ".snapshot");
+    }
+
+    /**
+     * Maps the snapshot and replays the journal on the writer thread. Damaged snapshot entries are
+     * skipped, and journal records after a truncated or corrupt one are dropped.
+     */
+    void load(@NonNull final Callback callback) {
+        mWriter.execute(new Runnable() {
+            @Override
+            public void run() {
+                final long start = System.nanoTime();
+                final Session session = read(mSnapshotFile, mFile);
+                BLog.d("Read %d bubble keys in %.2f ms", session.keys.size(), (System.nanoTime() - start) / 1e6);
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onSessionLoaded(session);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Takes over a loaded session as the live state, without appending anything. Keys recorded since
+     * the store was created are newer than the restored ones, and stay after them.
+     */
+    void restore(@NonNull Session session) {
+        final Set<String> newerKeys = new LinkedHashSet<>(mKeys);
+        mKeys.clear();
+        for (String key : session.keys) {
+            if (!newerKeys.contains(key)) mKeys.add(key);
+        }
+        mKeys.addAll(newerKeys);
+        mSnapshot = session.snapshot;
+        mSnapshotIndex.putAll(session.snapshotIndex);
+        for (Map.Entry<String, Integer> color : session.colors.entrySet()) {
+            if (mKeys.contains(color.getKey())) mColors.put(color.getKey(), color.getValue());
+        }
+        if (session.hasMasterPosition && !mHasMasterPosition) {
+            mHasMasterPosition = true;
+            mMasterX = session.masterX;
+            mMasterY = session.masterY;
+        }
+    }
+
+    /**
+     * @return color recorded for the key, or null if it kept the color of its style
+     */
+    @Nullable
+    Integer getColor(@NonNull String key) {
+        if (!mKeys.contains(key)) return null;
+        final Integer color = mColors.get(key);
+        if (color != null) return color;
+        final Integer index = mSnapshotIndex.get(key);
+        return index != null ? mSnapshot.colorAt(index) : null;
+    }
+
+    void recordAdd(@NonNull final String key) {
+        if (!mKeys.add(key)) return;
+        append(new Record() {
+            @Override
+            public void write(@NonNull DataOutputStream out) throws IOException {
+                out.writeByte(RECORD_ADD);
+                out.writeUTF(key);
+            }
+        });
+    }
+
+    void recordRemove(@NonNull final String key) {
+        if (!mKeys.remove(key)) return;
+        mColors.remove(key);
+        mSnapshotIndex.remove(key);
+        append(new Record() {
+            @Override
+            public void write(@NonNull DataOutputStream out) throws IOException {
+                out.writeByte(RECORD_REMOVE);
+                out.writeUTF(key);
+            }
+        });
+    }
+
+    /**
+     * Moves the key after every other key, keeping its color.
+     */
+    void recordMoveToEnd(@NonNull String key) {
+        final Integer color = getColor(key);
+        recordRemove(key);
+        recordAdd(key);
+        if (color != null) recordColor(key, color);
+    }
+
+    void recordColor(@NonNull final String key, @ColorInt final int color) {
+        final Integer previous = getColor(key);
+        if (!mKeys.contains(key) || previous != null && previous == color) return;
+        mColors.put(key, color);
+        append(new Record() {
+            @Override
+            public void write(@NonNull DataOutputStream out) throws IOException {
+                out.writeByte(RECORD_COLOR);
+                out.writeUTF(key);
+                out.writeInt(color);
+            }
+        });
+    }
+
+    void recordMasterPosition(final int x, final int y) {
+        if (mHasMasterPosition && mMasterX == x && mMasterY == y) return;
+        mHasMasterPosition = true;
+        mMasterX = x;
+        mMasterY = y;
+        append(new Record() {
+            @Override
+            public void write(@NonNull DataOutputStream out) throws IOException {
+                out.writeByte(RECORD_MASTER);
+                out.writeInt(x);
+                out.writeInt(y);
+            }
+        });
+    }
+
+    /**
+     * Writes the live state to a new snapshot and empties the journal.
+     */
+    void compact() {
+        final List<String> keys = new ArrayList<>(mKeys);
+        final Map<String, Integer> colors = new HashMap<>(mColors);
+        final BubbleSnapshot snapshot = mSnapshot;
+        final Map<String, Integer> snapshotIndex = new HashMap<>(mSnapshotIndex);
+        final boolean hasMasterPosition = mHasMasterPosition;
+        final int masterX = mMasterX, masterY = mMasterY;
+        mRecordCount = 0;
+        mWriter.execute(new Runnable() {
+            @Override
+            public void run() {
+                final File temp = new File(mSnapshotFile.getPath() + ".tmp");
+                try {
+                    // Entries not changed since the restore are copied over without being read
+                    BubbleSnapshot.write(temp, keys, colors, snapshot, snapshotIndex,
+                            hasMasterPosition, masterX, masterY);
+                    if (!temp.renameTo(mSnapshotFile)) {
+                        BLog.e("Could not replace bubble snapshot");
+                        return;
+                    }
+                    // The journal only holds changes made before the snapshot, replaying them is safe
+                    // if the process is killed before it is deleted
+                    closeOutput();
+                    if (mFile.exists() && !mFile.delete()) BLog.e("Could not reset bubble session");
+                } catch (IOException e) {
+                    BLog.e("Error while writing bubble snapshot: %s", e.getMessage());
+                }
+            }
+        });
+    }
+
+    /**
+     * Forgets the session, called when the bubbles are closed on purpose.
+     */
+    void clear() {
+        mKeys.clear();
+        mColors.clear();
+        mSnapshot = BubbleSnapshot.EMPTY;
+        mSnapshotIndex.clear();
+        mHasMasterPosition = false;
+        mRecordCount = 0;
+        mWriter.execute(new Runnable() {
+            @Override
+            public void run() {
+                closeOutput();
+                if (mFile.exists() && !mFile.delete()) BLog.e("Could not delete bubble session");
+                if (mSnapshotFile.exists() && !mSnapshotFile.delete()) BLog.e("Could not delete bubble snapshot");
+            }
+        });
+    }
+
+    /**
+     * Finishes pending writes on the writer thread and stops it.
+     */
+    void close() {
+        mWriter.execute(new Runnable() {
+            @Override
+            public void run() {
+                closeOutput();
+            }
+        });
+        mWriter.shutdown();
+    }
+
+    private interface Record {
+        void write(@NonNull DataOutputStream out) throws IOException;
+    }
+
+    private void append(@NonNull final Record record) {
+        mWriter.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (mOut == null) mOut = open(mFile, true);
+                    record.write(mOut);
+                    mOut.flush();
+                } catch (IOException e) {
+                    BLog.e("Error while writing bubble session: %s", e.getMessage());
+                    closeOutput();
+                }
+            }
+        });
+        if (++mRecordCount > mKeys.size() + COMPACT_SLACK) compact();
+    }
+
+    @NonNull
+    private static DataOutputStream open(@NonNull File file, boolean append) throws IOException {
+        final boolean writeHeader = !append || file.length() == 0;
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, append)));
+        if (writeHeader) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+        }
+        return out;
+    }
+
+    private void closeOutput() {
+        closeQuietly(mOut);
+        mOut = null;
+    }
+
+    private static void closeQuietly(DataOutputStream out) {
+        if (out == null) return;
+        try {
+            out.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    @NonNull
+    static Session read(@NonNull File snapshotFile, @NonNull File file) {
+        final Set<String> keys = new LinkedHashSet<>();
+        final Map<String, Integer> colors = new HashMap<>();
+        final Map<String, Integer> snapshotIndex = new HashMap<>();
+        boolean hasMasterPosition = false;
+        int masterX = 0, masterY = 0;
+        BubbleSnapshot snapshot = BubbleSnapshot.EMPTY;
+        try {
+            snapshot = BubbleSnapshot.open(snapshotFile);
+        } catch (IOException e) {
+            BLog.e("Ignoring bubble snapshot: %s", e.getMessage());
+        }
+        // Keys are needed up front to rebuild the order and the queue. Entries, and with them the
+        // colors, are only read once their bubble is inflated
+        for (int i = 0; i < snapshot.size(); i++) {
+            final String key = snapshot.keyAt(i);
+            if (key == null) {
+                BLog.e("Skipping damaged bubble snapshot key %d", i);
+            } else if (keys.add(key)) {
+                snapshotIndex.put(key, i);
+            }
+        }
+        if (snapshot.hasMasterPosition()) {
+            hasMasterPosition = true;
+            masterX = snapshot.getMasterX();
+            masterY = snapshot.getMasterY();
+        }
+        if (file.length() > 0) {
+            DataInputStream in = null;
+            try {
+                in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+                if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+                    BLog.e("Ignoring bubble session of another version");
+                } else {
+                    while (true) {
+                        final byte type = in.readByte();
+                        if (type == RECORD_ADD) {
+                            keys.add(in.readUTF());
+                        } else if (type == RECORD_REMOVE) {
+                            final String key = in.readUTF();
+                            keys.remove(key);
+                            colors.remove(key);
+                            snapshotIndex.remove(key);
+                        } else if (type == RECORD_COLOR) {
+                            colors.put(in.readUTF(), in.readInt());
+                        } else if (type == RECORD_MASTER) {
+                            masterX = in.readInt();
+                            masterY = in.readInt();
+                            hasMasterPosition = true;
+                        } else {
+                            BLog.e("Unknown bubble session record %d", type);
+                            break;
+                        }
+                    }
+                }
+            } catch (EOFException ignored) {
+                // End of the journal, or a record cut short by the process being killed
+            } catch (IOException e) {
+                BLog.e("Error while reading bubble session: %s", e.getMessage());
+            } finally {
+                if (in != null) {
+                    try {
+                        in.close();
+                    } catch (IOException ignored) {
+                    }
+                }
+            }
+        }
+        return new Session(new ArrayList<>(keys), Collections.unmodifiableMap(colors), snapshot,
+                snapshotIndex, hasMasterPosition, masterX, masterY);
+    }
+}
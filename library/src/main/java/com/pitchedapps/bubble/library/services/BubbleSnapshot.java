@@ -0,0 +1,387 @@
+package com.pitchedapps.bubble.library.services;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Versioned binary snapshot of a bubble session, memory-mapped and decoded one entry at a time.
+ * <p>
+ * Opening a snapshot only checks the header and the index. Keys are stored apart from the rest of
+ * their entry, so the keys needed to rebuild the order and the queue are read without touching any
+ * entry. An entry is only checked and decoded once its color is asked for, which a restore does for
+ * the visible bubbles as they are inflated and for queued ones as they are promoted. Keys and entries
+ * each carry their own checksum, so damage only loses the key or the color it hits.
+ * <p>
+ * Layout, big endian:
+ * <pre>
+ * header   magic:int version:short reserved:short count:int hasMaster:byte pad:3
+ *          masterX:int masterY:int crc:int reserved:int
+ * index    (keyOffset:int entryOffset:int) * count
+ * key      keyLength:short key:utf8 crc:int
+ * entry    length:int payload:byte[length] crc:int
+ * payload  flags:byte color:int
+ * </pre>
+ * The header checksum covers the header before it and the whole index.
+ * <p>
+ * Indicator text and icons are derived from the key again when bubbles are styled, so they are
+ * not stored.
+ */
+final class BubbleSnapshot {
+
+    /**
+     * Thrown when the snapshot is not a snapshot of this version, or its header or index is damaged.
+     */
+    static final class CorruptSnapshotException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        CorruptSnapshotException(String message) {
+            super(message);
+        }
+    }
+
+    static final int MAGIC = 0x42425350;
+    static final int VERSION = 2;
+    static final int HEADER_SIZE = 32;
+    static final int INDEX_ENTRY_SIZE = 8;
+    private static final int CRC_OFFSET = 24;
+    private static final int PAYLOAD_SIZE = 5;
+
+    private static final int FLAG_HAS_COLOR = 1;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    static final BubbleSnapshot EMPTY = new BubbleSnapshot(ByteBuffer.allocate(0), 0, false, 0, 0);
+
+    private final ByteBuffer mBuffer;
+    private final int mCount;
+    private final boolean mHasMasterPosition;
+    private final int mMasterX, mMasterY;
+
+    // Decoded keys and entries, filled on first access
+    private final String[] mKeys;
+    private final byte[] mKeyState;
+    private final int[] mColors;
+    private final boolean[] mHasColor;
+    private final byte[] mEntryState;
+    private static final byte STATE_UNREAD = 0;
+    private static final byte STATE_VALID = 1;
+    private static final byte STATE_CORRUPT = 2;
+
+    private BubbleSnapshot(@NonNull ByteBuffer buffer, int count, boolean hasMasterPosition,
+                           int masterX, int masterY) {
+        mBuffer = buffer;
+        mCount = count;
+        mHasMasterPosition = hasMasterPosition;
+        mMasterX = masterX;
+        mMasterY = masterY;
+        mKeys = new String[count];
+        mKeyState = new byte[count];
+        mColors = new int[count];
+        mHasColor = new boolean[count];
+        mEntryState = new byte[count];
+    }
+
+    /**
+     * Maps the snapshot and checks its header and index. Keys and entries are not read.
+     *
+     * @return the snapshot, or {@link #EMPTY} if the file does not exist
+     * @throws CorruptSnapshotException if the file is not a readable snapshot
+     */
+    @NonNull
+    static BubbleSnapshot open(@NonNull File file) throws IOException {
+        if (!file.exists() || file.length() == 0) return EMPTY;
+        final MappedByteBuffer buffer;
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            final FileChannel channel = raf.getChannel();
+            // The mapping stays valid once the channel is closed
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            raf.close();
+        }
+        return parse(buffer);
+    }
+
+    @NonNull
+    static BubbleSnapshot parse(@NonNull ByteBuffer buffer) throws CorruptSnapshotException {
+        final int limit = buffer.limit();
+        if (limit < HEADER_SIZE) throw new CorruptSnapshotException("Truncated header");
+        if (buffer.getInt(0) != MAGIC) throw new CorruptSnapshotException("Not a bubble snapshot");
+        final int version = buffer.getShort(4);
+        if (version != VERSION) throw new CorruptSnapshotException("Unsupported version " + version);
+        final int count = buffer.getInt(8);
+        if (count < 0 || count > (limit - HEADER_SIZE) / INDEX_ENTRY_SIZE) {
+            throw new CorruptSnapshotException("Bad entry count " + count);
+        }
+        final CRC32 crc = new CRC32();
+        update(crc, buffer, 0, CRC_OFFSET);
+        update(crc, buffer, HEADER_SIZE, count * INDEX_ENTRY_SIZE);
+        if ((int) crc.getValue() != buffer.getInt(CRC_OFFSET)) {
+            throw new CorruptSnapshotException("Header checksum mismatch");
+        }
+        return new BubbleSnapshot(buffer, count, buffer.get(12) != 0, buffer.getInt(16), buffer.getInt(20));
+    }
+
+    /**
+     * @return number of entries, including damaged ones
+     */
+    int size() {
+        return mCount;
+    }
+
+    boolean hasMasterPosition() {
+        return mHasMasterPosition;
+    }
+
+    int getMasterX() {
+        return mMasterX;
+    }
+
+    int getMasterY() {
+        return mMasterY;
+    }
+
+    /**
+     * Reads the key of an entry without reading the entry itself.
+     *
+     * @return key of the entry, or null if the key is damaged
+     */
+    @Nullable
+    synchronized String keyAt(int index) {
+        checkIndex(index);
+        if (mKeyState[index] == STATE_UNREAD) {
+            mKeyState[index] = readKey(index) ? STATE_VALID : STATE_CORRUPT;
+        }
+        return mKeyState[index] == STATE_VALID ? mKeys[index] : null;
+    }
+
+    /**
+     * @return color of the entry, or null if it has none or the entry is damaged
+     */
+    @Nullable
+    synchronized Integer colorAt(int index) {
+        checkIndex(index);
+        if (mEntryState[index] == STATE_UNREAD) {
+            mEntryState[index] = readEntry(index) ? STATE_VALID : STATE_CORRUPT;
+        }
+        return mEntryState[index] == STATE_VALID && mHasColor[index] ? mColors[index] : null;
+    }
+
+    /**
+     * @return true if the entry was checked and decoded
+     */
+    synchronized boolean isEntryRead(int index) {
+        checkIndex(index);
+        return mEntryState[index] != STATE_UNREAD;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= mCount) throw new IndexOutOfBoundsException("Entry " + index);
+    }
+
+    private int keyOffset(int index) {
+        return mBuffer.getInt(HEADER_SIZE + index * INDEX_ENTRY_SIZE);
+    }
+
+    private int entryOffset(int index) {
+        return mBuffer.getInt(HEADER_SIZE + index * INDEX_ENTRY_SIZE + 4);
+    }
+
+    private boolean readKey(int index) {
+        final int offset = keyOffset(index);
+        if (offset < HEADER_SIZE || offset > mBuffer.limit() - 6) return false;
+        final int keyLength = mBuffer.getShort(offset) & 0xFFFF;
+        if (keyLength > mBuffer.limit() - offset - 6) return false;
+        final CRC32 crc = new CRC32();
+        update(crc, mBuffer, offset, 2 + keyLength);
+        if ((int) crc.getValue() != mBuffer.getInt(offset + 2 + keyLength)) return false;
+        final byte[] key = new byte[keyLength];
+        for (int i = 0; i < keyLength; i++) {
+            key[i] = mBuffer.get(offset + 2 + i);
+        }
+        mKeys[index] = new String(key, UTF_8);
+        return true;
+    }
+
+    /**
+     * @return offset of the payload of the entry, or -1 if the entry does not fit in the snapshot
+     */
+    private int payloadOffset(int index) {
+        final int offset = entryOffset(index);
+        if (offset < HEADER_SIZE || offset > mBuffer.limit() - 8 - PAYLOAD_SIZE) return -1;
+        return mBuffer.getInt(offset) == PAYLOAD_SIZE ? offset + 4 : -1;
+    }
+
+    private boolean readEntry(int index) {
+        final int payload = payloadOffset(index);
+        if (payload < 0) return false;
+        final CRC32 crc = new CRC32();
+        update(crc, mBuffer, payload, PAYLOAD_SIZE);
+        if ((int) crc.getValue() != mBuffer.getInt(payload + PAYLOAD_SIZE)) return false;
+        mHasColor[index] = (mBuffer.get(payload) & FLAG_HAS_COLOR) != 0;
+        mColors[index] = mBuffer.getInt(payload + 1);
+        return true;
+    }
+
+    /**
+     * Copies the entry as stored, checksum included, without reading it. A damaged payload stays
+     * damaged in the copy, and is only found out once the copy is read.
+     *
+     * @return false if the entry does not fit in the snapshot and nothing was copied
+     */
+    private synchronized boolean copyEntry(int index, @NonNull DataOutputStream out) throws IOException {
+        final int payload = payloadOffset(index);
+        if (payload < 0) return false;
+        out.writeInt(PAYLOAD_SIZE);
+        for (int i = 0; i < PAYLOAD_SIZE + 4; i++) {
+            out.writeByte(mBuffer.get(payload + i));
+        }
+        return true;
+    }
+
+    private static void update(@NonNull CRC32 crc, @NonNull ByteBuffer buffer, int offset, int length) {
+        final byte[] chunk = new byte[Math.min(length, 4096)];
+        int position = offset;
+        int remaining = length;
+        while (remaining > 0) {
+            final int read = Math.min(remaining, chunk.length);
+            for (int i = 0; i < read; i++) {
+                chunk[i] = buffer.get(position + i);
+            }
+            crc.update(chunk, 0, read);
+            position += read;
+            remaining -= read;
+        }
+    }
+
+    /**
+     * Encodes a snapshot of the given state.
+     *
+     * @param keys   bubble keys, oldest first
+     * @param colors colors of the keys that have one
+     */
+    @NonNull
+    static byte[] encode(@NonNull List<String> keys, @NonNull Map<String, Integer> colors,
+                         boolean hasMasterPosition, int masterX, int masterY) throws IOException {
+        return encode(keys, colors, EMPTY, Collections.<String, Integer>emptyMap(),
+                hasMasterPosition, masterX, masterY);
+    }
+
+    /**
+     * Encodes a snapshot of the given state. Keys without a color of their own keep the entry they
+     * have in the source snapshot, which is copied without being read.
+     *
+     * @param keys        bubble keys, oldest first
+     * @param colors      colors of the keys that have one, taking precedence over the source
+     * @param source      snapshot the state was restored from
+     * @param sourceIndex entry of each key in the source snapshot
+     */
+    @NonNull
+    static byte[] encode(@NonNull List<String> keys, @NonNull Map<String, Integer> colors,
+                         @NonNull BubbleSnapshot source, @NonNull Map<String, Integer> sourceIndex,
+                         boolean hasMasterPosition, int masterX, int masterY) throws IOException {
+        final int count = keys.size();
+        final ByteArrayOutputStream keyBytes = new ByteArrayOutputStream(count * 64);
+        final DataOutputStream keyRecords = new DataOutputStream(keyBytes);
+        final ByteArrayOutputStream entryBytes = new ByteArrayOutputStream(count * (PAYLOAD_SIZE + 8));
+        final DataOutputStream entries = new DataOutputStream(entryBytes);
+        final int[] keyOffsets = new int[count];
+        final int[] entryOffsets = new int[count];
+        final CRC32 crc = new CRC32();
+        for (int i = 0; i < count; i++) {
+            final String key = keys.get(i);
+            final byte[] utf8 = key.getBytes(UTF_8);
+            if (utf8.length > 0xFFFF) throw new IOException("Key too long: " + key);
+            final byte[] record = new byte[2 + utf8.length];
+            ByteBuffer.wrap(record).putShort((short) utf8.length).put(utf8);
+            crc.reset();
+            crc.update(record, 0, record.length);
+            keyOffsets[i] = keyRecords.size();
+            keyRecords.write(record);
+            keyRecords.writeInt((int) crc.getValue());
+
+            entryOffsets[i] = entries.size();
+            final Integer color = colors.get(key);
+            final Integer sourceEntry = sourceIndex.get(key);
+            if (color == null && sourceEntry != null && source.copyEntry(sourceEntry, entries)) continue;
+            final byte[] payload = new byte[PAYLOAD_SIZE];
+            ByteBuffer.wrap(payload).put((byte) (color != null ? FLAG_HAS_COLOR : 0))
+                    .putInt(color != null ? color : 0);
+            crc.reset();
+            crc.update(payload, 0, payload.length);
+            entries.writeInt(payload.length);
+            entries.write(payload);
+            entries.writeInt((int) crc.getValue());
+        }
+        keyRecords.flush();
+        entries.flush();
+
+        final int keysStart = HEADER_SIZE + count * INDEX_ENTRY_SIZE;
+        final int entriesStart = keysStart + keyBytes.size();
+        final ByteBuffer out = ByteBuffer.allocate(entriesStart + entryBytes.size());
+        out.putInt(MAGIC);
+        out.putShort((short) VERSION);
+        out.putShort((short) 0);
+        out.putInt(count);
+        out.put((byte) (hasMasterPosition ? 1 : 0));
+        out.put(new byte[3]);
+        out.putInt(masterX);
+        out.putInt(masterY);
+        out.putInt(0);
+        out.putInt(0);
+        for (int i = 0; i < count; i++) {
+            out.putInt(keysStart + keyOffsets[i]);
+            out.putInt(entriesStart + entryOffsets[i]);
+        }
+        out.put(keyBytes.toByteArray());
+        out.put(entryBytes.toByteArray());
+        final byte[] bytes = out.array();
+        crc.reset();
+        crc.update(bytes, 0, CRC_OFFSET);
+        crc.update(bytes, HEADER_SIZE, count * INDEX_ENTRY_SIZE);
+        ByteBuffer.wrap(bytes).putInt(CRC_OFFSET, (int) crc.getValue());
+        return bytes;
+    }
+
+    /**
+     * Writes a snapshot of the given state and syncs it to disk.
+     */
+    static void write(@NonNull File file, @NonNull List<String> keys, @NonNull Map<String, Integer> colors,
+                      boolean hasMasterPosition, int masterX, int masterY) throws IOException {
+        write(file, keys, colors, EMPTY, Collections.<String, Integer>emptyMap(), hasMasterPosition, masterX, masterY);
+    }
+
+    /**
+     * Writes a snapshot of the given state and syncs it to disk, copying the entries of keys without
+     * a color of their own from the source snapshot.
+     *
+     * @see #encode(List, Map, BubbleSnapshot, Map, boolean, int, int)
+     */
+    static void write(@NonNull File file, @NonNull List<String> keys, @NonNull Map<String, Integer> colors,
+                      @NonNull BubbleSnapshot source, @NonNull Map<String, Integer> sourceIndex,
+                      boolean hasMasterPosition, int masterX, int masterY) throws IOException {
+        final byte[] bytes = encode(keys, colors, source, sourceIndex, hasMasterPosition, masterX, masterY);
+        final FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(bytes);
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+    }
+}
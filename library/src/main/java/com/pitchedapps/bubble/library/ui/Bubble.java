@@ -4,8 +4,8 @@ import android.annotation.SuppressLint;
 import android.annotation.TargetApi;
 import android.content.Context;
 import android.os.Build;
-import android.os.Handler;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.view.GestureDetector;
 import android.view.Gravity;
 import android.view.MotionEvent;
@@ -18,13 +18,14 @@ import com.facebook.rebound.Spring;
 import com.facebook.rebound.SpringConfig;
 import com.facebook.rebound.SpringListener;
 import com.pitchedapps.bubble.library.logging.BLog;
+import com.pitchedapps.bubble.library.physics.BubbleMotion;
+import com.pitchedapps.bubble.library.physics.DropTarget;
 import com.pitchedapps.bubble.library.physics.MovementTracker;
-import com.pitchedapps.bubble.library.physics.SpringConfigs;
-
-import java.util.Timer;
-import java.util.TimerTask;
+import com.pitchedapps.bubble.library.physics.SpringFrameBatcher;
 
 import com.pitchedapps.bubble.library.BuildConfig;
+import com.pitchedapps.bubble.library.utils.CoastingTimer;
+import com.pitchedapps.bubble.library.utils.Scheduler;
 import com.pitchedapps.bubble.library.utils.Utils;
 import timber.log.Timber;
 
@@ -32,16 +33,13 @@ import timber.log.Timber;
  * Bubble object which adds draggable and gesture functionality.
  */
 @SuppressLint("ViewConstructor")
-public abstract class Bubble extends BubbleBase implements SpringListener {
+public abstract class Bubble extends BubbleBase implements SpringListener, SpringFrameBatcher.Client {
 
     private static final float TOUCH_DOWN_SCALE = 1f;
     private static final float TOUCH_UP_SCALE = 1f;
     // Coordinate of remove web head that we can lock on to.
-    private int[] mTrashLockCoordinate;
-    // True when being dragged, otherwise false
-    private boolean mDragging;
-    // True when attached to remove view, otherwise false
-    private boolean mWasRemoveLocked;
+    private int mTrashLockX, mTrashLockY;
+    private boolean mTrashLockSet;
     // True when fling detected and false on new touch event
     private boolean mWasFlung;
     // True when click was detected, and false on new touch event
@@ -50,25 +48,78 @@ public abstract class Bubble extends BubbleBase implements SpringListener {
     private boolean mScaledDown;
     // If this is true, then on releasing the web head, we close all others and clean up.
     private boolean mShouldCloseAll;
-    // If web head is resting on the sides
-    private boolean mIsCoasting = false;
+    // Drop target the web head is locked onto while dragged, if any
+    @Nullable
+    private DropTarget mDropTarget;
     // Minimum horizontal velocity that we need to move the web head from one end of the scree to another
     private static int MINIMUM_HORIZONTAL_FLING_VELOCITY = 0;
     // Touch slop of the device
     private final int mTouchSlop = ViewConfiguration.get(getContext()).getScaledTouchSlop();
+    // Squared touch slop so that move events can be compared without a square root
+    private final int mTouchSlopSquare = mTouchSlop * mTouchSlop;
+    // Distance within which a closing web head snaps onto the remove view
+    private static final int REMOVE_SNAP_DISTANCE = Utils.dpToPx(15);
     // Long press duration of device
     private static final int mLongPressDuration = ViewConfiguration.getLongPressTimeout();
     // Gesture detector to recognize fling and click on web heads
     private final GestureDetector mGestureDetector = new GestureDetector(getContext(), new GestureDetectorListener());
     // Individual springs to control X, Y and scale of the web head
     private Spring mXSpring, mYSpring, mScaleSpring;
+    // Headless physics driving the X and Y springs; this view only applies its results
+    private BubbleMotion mMotion;
 
     private float posX, posY;
-    private int initialDownX, initialDownY;
 
-    private static final Timer sTimer = new Timer();
-    private static TimerTask sLongPressToCloseAllTask;
-    private TimerTask mCoastingTask;
+    // Delay after which holding the master over the remove view closes all web heads
+    private static final long LONG_PRESS_TO_CLOSE_ALL_DELAY = 3000;
+    // Runs delayed behavior on the main thread, shared by all web heads of the service
+    private final Scheduler mScheduler;
+    private final Runnable mLongPressToCloseAllTask = new Runnable() {
+        @Override
+        public void run() {
+            mShouldCloseAll = true;
+            cancelToast();
+//            sToast = Toast.makeText(getContext(), R.string.close_all_explanation, Toast.LENGTH_SHORT);
+//            sToast.setGravity(Gravity.CENTER, 0, 0);
+//            sToast.show();
+        }
+    };
+    // Coasts the master out of the screen a while after the last touch
+    private final CoastingTimer mCoastingTimer;
+    // Applies the drop target found by the motion model on every move event. Side effects are only
+    // applied when the target changes, so that repeated move events inside or outside of a target
+    // do no extra work
+    private final BubbleMotion.DropTargetHandler mDropTargetHandler = new BubbleMotion.DropTargetHandler() {
+        @Override
+        public void onDragOver(@Nullable DropTarget target) {
+            getRemoveBubble().reveal();
+            mUserManuallyMoved = true;
+            if (target != mDropTarget) setDropTarget(target);
+            if (target != null) {
+                touchUp();
+            } else {
+                touchDown();
+            }
+        }
+
+        @Override
+        public int getLockX(@NonNull DropTarget target) {
+            if (isRemoveTarget(target)) {
+                computeTrashLockCoOrd();
+                return mTrashLockX;
+            }
+            return target.getCenterX() - getWidth() / 2;
+        }
+
+        @Override
+        public int getLockY(@NonNull DropTarget target) {
+            if (isRemoveTarget(target)) {
+                computeTrashLockCoOrd();
+                return mTrashLockY;
+            }
+            return target.getCenterY() - getWidth() / 2;
+        }
+    };
 
     private static Toast sToast;
 
@@ -81,6 +132,8 @@ public abstract class Bubble extends BubbleBase implements SpringListener {
      * has wrong polarity.
      */
     private static MovementTracker sMovementTracker;
+    // Reused output of the movement tracker so that flings do not allocate
+    private final float[] mAdjustedVelocities = new float[2];
 
     /**
      * Inits the web head and attaches to the system window. It is assumed that draw over other apps permission is
@@ -93,7 +146,17 @@ public abstract class Bubble extends BubbleBase implements SpringListener {
     public Bubble(@NonNull Context context, @NonNull String key, @NonNull BubbleContract contract) {
         super(context, key);
         mContract = contract;
+        mScheduler = contract.getScheduler();
+        mCoastingTimer = new CoastingTimer(mScheduler, new Runnable() {
+            @Override
+            public void run() {
+                Timber.v("Coasting active");
+                mMotion.coast(getWidth());
+            }
+        });
         mMaster = true;
+        setCompositor(contract.getCompositor());
+        setRenderCache(contract.getRenderCache());
         sMovementTracker = MovementTracker.obtain();
         calcVelocities();
         setupSprings();
@@ -112,6 +175,7 @@ public abstract class Bubble extends BubbleBase implements SpringListener {
         mYSpring.addListener(this);
         mXSpring = mContract.newSpring();
         mXSpring.addListener(this);
+        mMotion = new BubbleMotion(mXSpring, mYSpring);
         mScaleSpring = mContract.newSpring();
         mScaleSpring.addListener(new SimpleSpringListener() {
             @Override
@@ -136,6 +200,11 @@ public abstract class Bubble extends BubbleBase implements SpringListener {
             // Let gesture detector intercept events, needed for fling and click
             mGestureDetector.onTouchEvent(event);
 
+            final int action = event.getAction();
+            if (action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_CANCEL) {
+                mContract.onMasterTouchUp();
+            }
+
             if (mWasClicked) return true;
 
             switch (event.getAction()) {
@@ -164,12 +233,10 @@ public abstract class Bubble extends BubbleBase implements SpringListener {
     }
 
     private void handleTouchDown(@NonNull MotionEvent event) {
-        mDragging = false;
-
         sMovementTracker.onDown();
+        mContract.onMasterTouchDown();
 
-        initialDownX = mWindowParams.x;
-        initialDownY = mWindowParams.y;
+        mMotion.touchDown();
 
         posX = event.getRawX();
         posY = event.getRawY();
@@ -191,66 +258,35 @@ public abstract class Bubble extends BubbleBase implements SpringListener {
      * @param event the touch event
      */
     private void handleMove(@NonNull MotionEvent event) {
-        sMovementTracker.addMovement(event);
+        sMovementTracker.addMovement(event.getRawX(), event.getRawY(), event.getEventTime());
 
         float offsetX = event.getRawX() - posX;
         float offsetY = event.getRawY() - posY;
 
-        if (Math.hypot(offsetX, offsetY) > mTouchSlop) {
-            mDragging = true;
-        }
-
-        if (mDragging) {
-            getRemoveBubble().reveal();
-
-            mUserManuallyMoved = true;
-
-            int x = (int) (initialDownX + offsetX);
-            int y = (int) (initialDownY + offsetY);
-
-            if (isNearRemoveCircle(x, y)) {
-                getRemoveBubble().grow();
-                touchUp();
-
-                mXSpring.setSpringConfig(SpringConfigs.SNAP);
-                mYSpring.setSpringConfig(SpringConfigs.SNAP);
-
-                mXSpring.setEndValue(trashLockCoOrd()[0]);
-                mYSpring.setEndValue(trashLockCoOrd()[1]);
-
-            } else {
-                getRemoveBubble().shrink();
-
-                mXSpring.setSpringConfig(SpringConfigs.DRAG);
-                mYSpring.setSpringConfig(SpringConfigs.DRAG);
-
-                mXSpring.setCurrentValue(x);
-                mYSpring.setCurrentValue(y);
-
-                touchDown();
-            }
-        }
+        mMotion.handleMove(offsetX, offsetY, mTouchSlopSquare, mContract.getDropTargets(),
+                getWidth() / 2, mDropTargetHandler);
     }
 
     private boolean handleTouchUp() {
         cancelToast();
         if (mShouldCloseAll) {
-            sTimer.purge();
+            mScheduler.cancel(mLongPressToCloseAllTask);
             mContract.closeAll();
             return true;
         }
-        if (mWasRemoveLocked) {
-            // If head was locked onto a remove bubble before, then kill ourselves
-            destroySelf(true);
-            return true;
+        if (mMotion.isLocked()) {
+            if (isRemoveTarget(mDropTarget)) {
+                // If head was locked onto a remove bubble before, then kill ourselves
+                destroySelf(true);
+                return true;
+            }
+            final DropTarget target = mDropTarget;
+            if (target != null) target.getListener().onBubbleDrop(target, getKey());
+            setDropTarget(null);
         }
-        mDragging = false;
-
         sMovementTracker.onUp();
 
-        if (!mWasFlung && mUserManuallyMoved) {
-            stickToWall();
-        }
+        mMotion.release(mWasFlung, mUserManuallyMoved);
         touchUp();
         // hide remove view
         RemoveBubble.disappear();
@@ -259,25 +295,7 @@ public abstract class Bubble extends BubbleBase implements SpringListener {
     }
 
     private void scheduleLongPressToCloseTask() {
-        if (sLongPressToCloseAllTask != null) {
-            sLongPressToCloseAllTask.cancel();
-        }
-        sLongPressToCloseAllTask = new TimerTask() {
-            @Override
-            public void run() {
-                mShouldCloseAll = true;
-                post(new Runnable() {
-                    @Override
-                    public void run() {
-                        cancelToast();
-//                        sToast = Toast.makeText(getContext(), R.string.close_all_explanation, Toast.LENGTH_SHORT);
-//                        sToast.setGravity(Gravity.CENTER, 0, 0);
-//                        sToast.show();
-                    }
-                });
-            }
-        };
-        sTimer.schedule(sLongPressToCloseAllTask, 3000);
+        mScheduler.schedule(mLongPressToCloseAllTask, LONG_PRESS_TO_CLOSE_ALL_DELAY);
     }
 
     /**
@@ -288,29 +306,13 @@ public abstract class Bubble extends BubbleBase implements SpringListener {
             return;
         }
         cancelCoastingTask();
-        mCoastingTask = new TimerTask() {
-            @Override
-            public void run() {
-                Timber.v("Coasting active");
-                mIsCoasting = true;
-                final int halfWidth = getWidth() / 4;
-                if (sScreenBounds != null)
-                    if (mWindowParams.x < sDispWidth / 2) {
-                        mXSpring.setEndValue(sScreenBounds.left - halfWidth);
-                    } else {
-                        mXSpring.setEndValue(sScreenBounds.right + halfWidth);
-                    }
-            }
-        };
         Timber.v("Scheduled a coasting task");
-        sTimer.schedule(mCoastingTask, 6000);
+        mCoastingTimer.schedule();
     }
 
     private void cancelCoastingTask() {
-        mIsCoasting = false;
-        if (mCoastingTask != null) {
-            mCoastingTask.cancel();
-        }
+        mMotion.cancelCoasting();
+        mCoastingTimer.cancel();
     }
 
     public static void cancelToast() {
@@ -320,59 +322,57 @@ public abstract class Bubble extends BubbleBase implements SpringListener {
     }
 
     /**
-     * Returns the coordinate where the web head should lock to the remove web heads.
-     * Calculated once and reused there after.
-     *
-     * @return array of x and y.
+     * Computes the coordinate where the web head should lock to the remove web heads into
+     * {@link #mTrashLockX} and {@link #mTrashLockY}. Calculated once and reused until the display
+     * changes.
      */
-    private int[] trashLockCoOrd() {
-        if (mTrashLockCoordinate == null) {
-            int[] removeCentre = getRemoveBubble().getCenterCoordinates();
+    private void computeTrashLockCoOrd() {
+        if (!mTrashLockSet) {
+            final RemoveBubble removeBubble = getRemoveBubble();
             int offset = getWidth() / 2;
-            int x = removeCentre[0] - offset;
-            int y = removeCentre[1] - offset;
-            mTrashLockCoordinate = new int[]{x, y};
+            mTrashLockX = removeBubble.getCenterX() - offset;
+            mTrashLockY = removeBubble.getCenterY() - offset;
+            mTrashLockSet = true;
         }
-        return mTrashLockCoordinate;
     }
 
     /**
-     * Used to determine if the web head is in vicinity of remove web head view.
-     *
-     * @param x Current x position of web head
-     * @param y Current y position of web head
-     * @return true if near, false other wise
+     * Leaves the current drop target, if any, and locks onto the given one.
      */
-    private boolean isNearRemoveCircle(int x, int y) {
-        int[] p = getRemoveBubble().getCenterCoordinates();
-        int rX = p[0];
-        int rY = p[1];
-
-        int offset = getWidth() / 2;
-        x += offset;
-        y += offset;
-
-        if (dist(rX, rY, x, y) < RemoveBubble.MAGNETISM_THRESHOLD) {
-            mWasRemoveLocked = true;
-            mBadgeView.setVisibility(INVISIBLE);
-            mContract.onMasterLockedToRemove();
-            scheduleLongPressToCloseTask();
-            return true;
-        } else {
-            mWasRemoveLocked = false;
-            mShouldCloseAll = false;
-            cancelToast();
-            if (sLongPressToCloseAllTask != null) {
-                sLongPressToCloseAllTask.cancel();
+    private void setDropTarget(@Nullable DropTarget target) {
+        final DropTarget previous = mDropTarget;
+        mDropTarget = target;
+        mMotion.setLocked(target != null);
+        if (previous != null) {
+            previous.getListener().onBubbleExit(previous, getKey());
+            if (isRemoveTarget(previous)) {
+                mShouldCloseAll = false;
+                cancelToast();
+                mScheduler.cancel(mLongPressToCloseAllTask);
+                mBadgeView.setVisibility(VISIBLE);
+                mContract.onMasterReleasedFromRemove();
+            }
+        }
+        if (target != null) {
+            target.getListener().onBubbleEnter(target, getKey());
+            if (isRemoveTarget(target)) {
+                mBadgeView.setVisibility(INVISIBLE);
+                mContract.onMasterLockedToRemove();
+                scheduleLongPressToCloseTask();
             }
-            mBadgeView.setVisibility(VISIBLE);
-            mContract.onMasterReleasedFromRemove();
-            return false;
         }
     }
 
-    private float dist(double x1, double y1, double x2, double y2) {
-        return (float) Math.sqrt(Math.pow(x2 - x1, 2) + Math.pow(y2 - y1, 2));
+    /**
+     * Lets other drop targets know that the web head left them when it goes away while locked. The
+     * remove target is kept, as closing animations rely on it.
+     */
+    private void releaseDropTarget() {
+        if (mDropTarget != null && !isRemoveTarget(mDropTarget)) setDropTarget(null);
+    }
+
+    private static boolean isRemoveTarget(@Nullable DropTarget target) {
+        return target != null && target.getId() == RemoveBubble.DROP_TARGET_ID;
     }
 
     public void reveal() {
@@ -405,14 +405,20 @@ public abstract class Bubble extends BubbleBase implements SpringListener {
     }
 
     public void setSpringConfig(@NonNull SpringConfig config) {
-        mXSpring.setSpringConfig(config);
-        mYSpring.setSpringConfig(config);
+        mMotion.setSpringConfig(config);
     }
 
     @Override
     public void onSpringUpdate(Spring spring) {
-        mWindowParams.x = (int) mXSpring.getCurrentValue();
-        mWindowParams.y = (int) mYSpring.getCurrentValue();
+        // X and Y springs both report every frame, so apply them together once the loop is done
+        mContract.getFrameBatcher().markDirty(this);
+    }
+
+    @Override
+    public void onSpringFrame() {
+        if (mDestroyed) return;
+        mWindowParams.x = mMotion.getX();
+        mWindowParams.y = mMotion.getY();
         updateView();
         if (mMaster) {
             mContract.onMasterBubbleMoved(mWindowParams.x, mWindowParams.y);
@@ -421,14 +427,18 @@ public abstract class Bubble extends BubbleBase implements SpringListener {
         }
     }
 
+    /**
+     * Keeps the badge on the side facing the screen center. Only lays out the badge again when the
+     * master crossed the middle of the screen, since this runs on every frame the master moves.
+     */
     @SuppressLint("RtlHardcoded")
     private void updateBadgeLocation() {
         final LayoutParams params = (LayoutParams) mBadgeView.getLayoutParams();
-        if (mWindowParams.x > sDispWidth / 2) {
-            params.gravity = Gravity.TOP | Gravity.LEFT;
-        } else {
-            params.gravity = Gravity.TOP | Gravity.RIGHT;
-        }
+        final int gravity = mWindowParams.x > sDispWidth / 2
+                ? Gravity.TOP | Gravity.LEFT
+                : Gravity.TOP | Gravity.RIGHT;
+        if (params.gravity == gravity) return;
+        params.gravity = gravity;
         mBadgeView.setLayoutParams(params);
     }
 
@@ -438,6 +448,8 @@ public abstract class Bubble extends BubbleBase implements SpringListener {
 
     @Override
     public void onSpringActivate(Spring spring) {
+        // Only the X and Y springs report here, so the web head is about to move
+        enterStaticRender();
     }
 
     @Override
@@ -446,76 +458,18 @@ public abstract class Bubble extends BubbleBase implements SpringListener {
     }
 
     private void checkBounds() {
-        // Only check when free
-        if (mDragging || sScreenBounds == null || !mMaster || mInQueue || mIsCoasting) {
+        // Only the free master reacts to the screen edges
+        if (!mMaster || mInQueue) {
             return;
         }
-
-        int x = mWindowParams.x;
-        int y = mWindowParams.y;
-
-        int width = getWidth();
-
-        if (x + width >= sDispWidth) {
-            mXSpring.setSpringConfig(SpringConfigs.FLING);
-            mXSpring.setEndValue(sScreenBounds.right);
-        }
-        if (x - width <= 0) {
-            mXSpring.setSpringConfig(SpringConfigs.FLING);
-            mXSpring.setEndValue(sScreenBounds.left);
-        }
-        if (y + width >= sDispHeight) {
-            mYSpring.setSpringConfig(SpringConfigs.FLING);
-            mYSpring.setEndValue(sScreenBounds.bottom);
-        }
-        if (y - width <= 0) {
-            mYSpring.setSpringConfig(SpringConfigs.FLING);
-            mYSpring.setEndValue(sScreenBounds.top);
-        }
-
-        int minimumVelocityToReachSides = Utils.dpToPx(100);
-        //noinspection StatementWithEmptyBody
-        if (!mWasRemoveLocked
-                && Math.abs(mXSpring.getVelocity()) < minimumVelocityToReachSides
-                && Math.abs(mYSpring.getVelocity()) < minimumVelocityToReachSides
-                && !mDragging) {
-            // Commenting temporarily TODO investigate if causing any issue
-            // stickToWall();
-        }
-    }
-
-    /**
-     * Makes the web head stick to either side of the wall.
-     */
-    private void stickToWall() {
-        if (mWindowParams.x > sDispWidth / 2) {
-            mXSpring.setSpringConfig(SpringConfigs.FLING);
-            mXSpring.setEndValue(sScreenBounds.right);
-            BLog.d("Restored X");
-        } else {
-            mXSpring.setSpringConfig(SpringConfigs.FLING);
-            mXSpring.setEndValue(sScreenBounds.left);
-            BLog.d("Restored X");
-        }
-
-        if (mWindowParams.y < sScreenBounds.top) {
-            mYSpring.setSpringConfig(SpringConfigs.FLING);
-            mYSpring.setEndValue(sScreenBounds.top);
-            BLog.d("Restored Y");
-        } else if (mWindowParams.y > sScreenBounds.bottom) {
-            mYSpring.setSpringConfig(SpringConfigs.FLING);
-            mYSpring.setEndValue(sScreenBounds.bottom);
-            BLog.d("Restored Y");
-        }
+        mMotion.checkBounds(getWidth());
     }
 
     /**
      * Method to move the current web head to wherever the last master was.
      */
     public void goToMasterTouchDownPoint() {
-        setSpringConfig(SpringConfigs.FLING);
-        mXSpring.setEndValue(masterDownX);
-        mYSpring.setEndValue(masterDownY);
+        mMotion.goTo(masterDownX, masterDownY);
     }
 
     @Override
@@ -525,34 +479,86 @@ public abstract class Bubble extends BubbleBase implements SpringListener {
         if (master) {
             updateBadgeLocation();
             updateBadgeColors(mBubbleColor);
-            mIsCoasting = false;
+            mMotion.cancelCoasting();
         }
     }
 
     @Override
     protected void onSpawnLocationSet(int x, int y) {
-        mXSpring.setCurrentValue(x);
-        mYSpring.setCurrentValue(y);
+        mMotion.setBounds(sScreenBounds);
+        mMotion.setPosition(x, y);
+    }
+
+    /**
+     * Moves this web head into a display of the given size, after
+     * {@link #updateScreenBounds(int, int)}. The master animates to the same relative position within
+     * the new bounds, and slaves follow it through the spring chain in the same frames.
+     */
+    public void onDisplayChanged(int dispWidth, int dispHeight) {
+        setDisplaySize(dispWidth, dispHeight);
+        // The remove view moved along with the display
+        mTrashLockSet = false;
+        if (mDestroyed || sScreenBounds == null) return;
+        if (mMaster && !mInQueue) {
+            mMotion.remap(sScreenBounds, getWidth());
+        } else {
+            mMotion.setBounds(sScreenBounds);
+        }
+    }
+
+    /**
+     * Reuses this destroyed web head for a new key. The inflated content, gesture detector and
+     * springs are kept; only the style and state of the web head are reset.
+     *
+     * @param key new bubble key
+     */
+    @Override
+    public void rebind(@NonNull String key) {
+        mWasFlung = false;
+        mWasClicked = false;
+        mScaledDown = false;
+        mShouldCloseAll = false;
+        mDropTarget = null;
+        mMotion = new BubbleMotion(mXSpring, mYSpring);
+        mScaleSpring.setCurrentValue(0.0f, true);
+        super.rebind(key);
+        scheduleCoastingTask();
     }
 
     @Override
     public void destroySelf(final boolean receiveCallback) {
+        releaseDropTarget();
         cancelCoastingTask();
+        mScheduler.cancel(mLongPressToCloseAllTask);
         cancelToast();
         mDestroyed = true;
         WEB_HEAD_COUNT--;
-        destroySprings();
+        restSprings();
         if (isCurrentlyAtRemoveWeb()) {
             if (Utils.isLollipopAbove()) {
                 closeWithAnimationL(receiveCallback);
             } else
                 closeWithAnimation(receiveCallback);
         } else {
-            if (receiveCallback) mContract.onBubbleDestroyed(this, isLastBubble());
             super.destroySelf(receiveCallback);
+            if (receiveCallback) mContract.onBubbleDestroyed(this, isLastBubble());
         }
     }
 
+    /**
+     * Removes this web head right away without notifying the contract. Used by the service when the
+     * web head is queued again and only its key is kept.
+     */
+    public void detach() {
+        releaseDropTarget();
+        cancelCoastingTask();
+        mScheduler.cancel(mLongPressToCloseAllTask);
+        mDestroyed = true;
+        WEB_HEAD_COUNT--;
+        restSprings();
+        detachFromWindow();
+    }
+
     /**
      * Animates and closes web head for pre L.
      *
@@ -572,12 +578,12 @@ public abstract class Bubble extends BubbleBase implements SpringListener {
                 }, new Runnable() {
                     @Override
                     public void run() {
-                        new Handler().postDelayed(new Runnable() {
+                        mScheduler.schedule(new Runnable() {
                             @Override
                             public void run() {
+                                Bubble.super.destroySelf(receiveCallback);
                                 if (receiveCallback)
                                     mContract.onBubbleDestroyed(Bubble.this, isLastBubble());
-                                Bubble.super.destroySelf(receiveCallback);
                             }
                         }, 200);
                     }
@@ -612,12 +618,12 @@ public abstract class Bubble extends BubbleBase implements SpringListener {
                                 new Runnable() {
                                     @Override
                                     public void run() {
-                                        new Handler().postDelayed(new Runnable() {
+                                        mScheduler.schedule(new Runnable() {
                                             @Override
                                             public void run() {
+                                                Bubble.super.destroySelf(receiveCallback);
                                                 if (receiveCallback)
                                                     mContract.onBubbleDestroyed(Bubble.this, isLastBubble());
-                                                Bubble.super.destroySelf(receiveCallback);
                                             }
                                         }, 200);
                                     }
@@ -632,14 +638,14 @@ public abstract class Bubble extends BubbleBase implements SpringListener {
      * @return true if locked, else false.
      */
     private boolean isCurrentlyAtRemoveWeb() {
-        int rx = trashLockCoOrd()[0];
-        int ry = trashLockCoOrd()[1];
+        computeTrashLockCoOrd();
+        int rx = mTrashLockX;
+        int ry = mTrashLockY;
 
         if (mWindowParams.x == rx && mWindowParams.y == ry) {
             return true;
         } else {
-            double dist = dist(mWindowParams.x, mWindowParams.y, rx, ry);
-            if (dist < Utils.dpToPx(15)) {
+            if (BubbleMotion.distSquared(mWindowParams.x, mWindowParams.y, rx, ry) < REMOVE_SNAP_DISTANCE * REMOVE_SNAP_DISTANCE) {
                 BLog.d("Adjusting positions");
                 mWindowParams.x = rx;
                 mWindowParams.y = ry;
@@ -649,9 +655,18 @@ public abstract class Bubble extends BubbleBase implements SpringListener {
         }
     }
 
-    private void destroySprings() {
-        mXSpring.destroy();
-        mYSpring.destroy();
+    private void restSprings() {
+        mXSpring.setAtRest();
+        mYSpring.setAtRest();
+    }
+
+    /**
+     * Removes the springs of a destroyed web head from the spring system. Must only be called once
+     * the web head will not be rebound anymore.
+     */
+    public void destroySprings() {
+        mMotion.destroy();
+        mScaleSpring.destroy();
     }
 
     /**
@@ -709,29 +724,18 @@ public abstract class Bubble extends BubbleBase implements SpringListener {
 
         @Override
         public boolean onFling(MotionEvent e1, MotionEvent e2, float velocityX, float velocityY) {
-            mDragging = false;
-
-            float[] adjustedVelocities = sMovementTracker.getAdjustedVelocities(velocityX, velocityY);
-
-            if (adjustedVelocities == null) {
-                float[] down = new float[]{e1.getRawX(), e1.getRawY()};
-                float[] up = new float[]{e2.getRawX(), e2.getRawY()};
-                adjustedVelocities = MovementTracker.adjustVelocities(down, up, velocityX, velocityY);
+            final float[] adjustedVelocities = mAdjustedVelocities;
+            if (!sMovementTracker.getAdjustedVelocities(velocityX, velocityY, adjustedVelocities)) {
+                MovementTracker.adjustVelocities(e1.getRawX(), e1.getRawY(), e2.getRawX(), e2.getRawY(),
+                        velocityX, velocityY, adjustedVelocities);
             }
 
-            if (adjustedVelocities != null) {
-                mWasFlung = true;
+            mWasFlung = true;
 
-                velocityX = interpolateXVelocity(e2, adjustedVelocities[0]);
+            velocityX = interpolateXVelocity(e2, adjustedVelocities[0]);
 
-                mXSpring.setSpringConfig(SpringConfigs.DRAG);
-                mYSpring.setSpringConfig(SpringConfigs.DRAG);
-
-                mXSpring.setVelocity(velocityX);
-                mYSpring.setVelocity(adjustedVelocities[1]);
-                return true;
-            }
-            return false;
+            mMotion.fling(velocityX, adjustedVelocities[1]);
+            return true;
         }
 
         /**
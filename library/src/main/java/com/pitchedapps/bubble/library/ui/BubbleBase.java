@@ -5,10 +5,14 @@ import android.animation.AnimatorListenerAdapter;
 import android.animation.AnimatorSet;
 import android.animation.ObjectAnimator;
 import android.annotation.SuppressLint;
+import android.annotation.TargetApi;
 import android.content.Context;
 import android.graphics.Bitmap;
+import android.graphics.Canvas;
 import android.graphics.Color;
+import android.graphics.Outline;
 import android.graphics.PixelFormat;
+import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.ColorDrawable;
 import android.graphics.drawable.Drawable;
 import android.graphics.drawable.TransitionDrawable;
@@ -18,11 +22,14 @@ import android.support.annotation.Nullable;
 import android.support.v4.content.ContextCompat;
 import android.support.v4.graphics.drawable.RoundedBitmapDrawable;
 import android.support.v4.view.animation.LinearOutSlowInInterpolator;
-import android.text.SpannableString;
+import android.os.Build;
+import android.os.SystemClock;
 import android.util.DisplayMetrics;
+import android.util.SparseArray;
 import android.view.Gravity;
 import android.view.LayoutInflater;
 import android.view.View;
+import android.view.ViewOutlineProvider;
 import android.view.WindowManager;
 import android.widget.FrameLayout;
 import android.widget.ImageView;
@@ -34,8 +41,11 @@ import com.pitchedapps.bubble.library.B;
 import com.pitchedapps.bubble.library.R;
 import com.pitchedapps.bubble.library.item.BubbleStyle;
 import com.pitchedapps.bubble.library.logging.BLog;
+import com.pitchedapps.bubble.library.physics.ScreenBounds;
 import com.pitchedapps.bubble.library.utils.ColourUtils;
 import com.pitchedapps.bubble.library.utils.Constants;
+import com.pitchedapps.bubble.library.utils.IconCache;
+import com.pitchedapps.bubble.library.utils.IconLoader;
 import com.pitchedapps.bubble.library.utils.Utils;
 
 import cn.nekocode.badge.BadgeDrawable;
@@ -51,6 +61,8 @@ abstract class BubbleBase extends FrameLayout {
     static ScreenBounds sScreenBounds;
     // Counter to keep count of active web heads
     static int WEB_HEAD_COUNT = 0;
+    // Web heads that are queued by the service and have not been inflated
+    private static int QUEUED_WEB_HEAD_COUNT = 0;
     // Class variables to keep track of where the master was last touched down
     static int masterDownX;
     static int masterDownY;
@@ -58,8 +70,8 @@ abstract class BubbleBase extends FrameLayout {
     private static WindowManager sWindowManager;
     // X icon drawable used when closing
     private static Drawable sXDrawable;
-    // Badge indicator
-    private static BadgeDrawable sBadgeDrawable;
+    // Badge text per web head count, each backed by its own drawable so that cached spans stay valid
+    private static final SparseArray<CharSequence> sBadgeSpans = new SparseArray<>();
     // Class variables to keep track of master movements
     private static int masterX;
     private static int masterY;
@@ -67,8 +79,8 @@ abstract class BubbleBase extends FrameLayout {
     final WindowManager.LayoutParams mWindowParams;
     // Color of web head when removed
     int sDeleteColor = Constants.NO_COLOR;
-    // Unique bubble key
-    private final String mKey;
+    // Unique bubble key, replaced when a recycled web head is rebound
+    private String mKey;
 
     private B.Position bubblesSpawnLocation;
 
@@ -77,6 +89,8 @@ abstract class BubbleBase extends FrameLayout {
     protected ElevatedCircleView mCircleBackground;
     protected CircleView mRevealView;
     protected TextView mBadgeView;
+    // Count currently shown by the badge, -1 if none was set yet
+    private int mBadgeCount = -1;
 
     // Display dimensions
     int sDispWidth, sDispHeight;
@@ -92,9 +106,39 @@ abstract class BubbleBase extends FrameLayout {
     boolean mInQueue;
 
     private boolean mSpawnSet;
+    // Shared window drawing this web head while it is a slave, null if every web head owns a window
+    @Nullable
+    private BubbleCompositor mCompositor;
+    // True while this web head is drawn by the compositor instead of its own window
+    private boolean mHosted;
+    // Shared rasterized appearances, null unless the service enabled static rendering
+    @Nullable
+    private BubbleRenderCache mRenderCache;
+    // Draws the rasterized appearance in place of the content layers, created on first use
+    @Nullable
+    private ImageView mStaticView;
+    // True while mStaticView replaces the content layers
+    private boolean mStaticRendering;
+    // Render cache key of the current content, built on first use and dropped when the content changes
+    @Nullable
+    private BubbleRenderCache.Key mRenderKey;
+    // Visibilities of the indicator and favicon to restore when drawing live again
+    private int mIndicatorVisibility, mFaviconVisibility;
+    // Uptime of the last content change, content animations are not rasterized
+    private long mContentChangedAt;
+    // Longest animation of the content layers after a change, see setFaviconDrawable
+    private static final long CONTENT_ANIMATION_DURATION = 500;
+    // Size of the favicon view in web_head_layout
+    public static final int FAVICON_SIZE_DP = 32;
+    // Identifies the favicon for the render cache, the shared bitmap of cached icons
+    @Nullable
+    private Object mIconIdentity;
     // Color of the web head
     @ColorInt
     int mBubbleColor;
+    // Background color right after inflation, restored when the web head is rebound
+    @ColorInt
+    private int mInflatedBackgroundColor;
 
     @SuppressLint("RtlHardcoded")
     BubbleBase(@NonNull Context context, @NonNull String key) {
@@ -136,11 +180,49 @@ abstract class BubbleBase extends FrameLayout {
         }
     }
 
+    /**
+     * Sets the number of queued web heads shown in the master's badge, in addition to the inflated
+     * ones.
+     *
+     * @param count number of queued keys held by the service
+     */
+    public static void setQueuedCount(int count) {
+        QUEUED_WEB_HEAD_COUNT = count;
+    }
+
+    private static int getTotalCount() {
+        return WEB_HEAD_COUNT + QUEUED_WEB_HEAD_COUNT;
+    }
+
     public static void clearMasterPosition() {
         masterY = 0;
         masterX = 0;
     }
 
+    /**
+     * Sets where new web heads spawn, such as the last master position of a restored session.
+     */
+    public static void setMasterPosition(int x, int y) {
+        masterX = x;
+        masterY = y;
+    }
+
+    /**
+     * Recomputes the bounds shared by every web head for a new display size. No op until a web
+     * head was measured, as the first one computes them from the current display.
+     */
+    public static void updateScreenBounds(int dispWidth, int dispHeight) {
+        if (sScreenBounds != null) sScreenBounds = sScreenBounds.resize(dispWidth, dispHeight);
+    }
+
+    public static int getMasterX() {
+        return masterX;
+    }
+
+    public static int getMasterY() {
+        return masterY;
+    }
+
     protected abstract void onMasterChanged(boolean master);
 
     /**
@@ -160,6 +242,7 @@ abstract class BubbleBase extends FrameLayout {
         mCircleBackground = (ElevatedCircleView) mContentGroup.findViewById(R.id.circleBackground);
         mRevealView = (CircleView) mContentGroup.findViewById(R.id.revealView);
         mBadgeView = (TextView) mContentGroup.findViewById(R.id.badge);
+        mInflatedBackgroundColor = mCircleBackground.getColor();
         postInflateContent(context, mContentGroup);
     }
 
@@ -172,28 +255,182 @@ abstract class BubbleBase extends FrameLayout {
         sDispHeight = metrics.heightPixels;
     }
 
+    void setDisplaySize(int dispWidth, int dispHeight) {
+        sDispWidth = dispWidth;
+        sDispHeight = dispHeight;
+    }
+
     @Override
     protected void onSizeChanged(int w, int h, int oldw, int oldh) {
         super.onSizeChanged(w, h, oldw, oldh);
         if (sScreenBounds == null)
-            sScreenBounds = new ScreenBounds(sDispWidth, sDispHeight, w);
+            sScreenBounds = new ScreenBounds(sDispWidth, sDispHeight, w, dpToPx(25));
+
+        if (!mSpawnSet) initSpawnLocation();
+    }
 
-        if (!mSpawnSet) {
-            int x, y = sDispHeight / 3;
+    private void initSpawnLocation() {
+        int x, y = sDispHeight / 3;
 
-            if (masterX != 0 || masterY != 0) {
-                x = masterX;
-                y = masterY;
+        if (masterX != 0 || masterY != 0) {
+            x = masterX;
+            y = masterY;
+        } else {
+            if (bubblesSpawnLocation == B.Position.RIGHT) {
+                x = sScreenBounds.right;
             } else {
-                if (bubblesSpawnLocation == B.Position.RIGHT) {
-                    x = sScreenBounds.right;
-                } else {
-                    x = sScreenBounds.left;
-                }
+                x = sScreenBounds.left;
             }
-            mSpawnSet = true;
-            onSpawnLocationSet(x, y);
         }
+        mSpawnSet = true;
+        onSpawnLocationSet(x, y);
+    }
+
+    /**
+     * Attaches a detached web head again under a new key, as if it was just created. The inflated
+     * content is reset and restyled through {@link #styleBubble(Context, String)}.
+     *
+     * @param key new bubble key
+     */
+    void rebind(@NonNull String key) {
+        WEB_HEAD_COUNT++;
+        mKey = key;
+        mDestroyed = false;
+        mUserManuallyMoved = false;
+        mMaster = true;
+        mInQueue = false;
+        setVisibility(VISIBLE);
+
+        resetContent();
+        addView(mContentGroup);
+        initContent();
+        sWindowManager.addView(this, mWindowParams);
+
+        if (WEB_HEAD_COUNT > 2) {
+            setBubbleElevation(dpToPx(4));
+        }
+        // The size is kept from the previous binding, so no size change will trigger the spawn
+        mSpawnSet = false;
+        if (sScreenBounds != null) initSpawnLocation();
+    }
+
+    void setRenderCache(@Nullable BubbleRenderCache renderCache) {
+        mRenderCache = renderCache;
+    }
+
+    /**
+     * Replaces the circle, reveal, indicator and favicon layers with a single bitmap of their current
+     * appearance, shared through the render cache. The badge is still drawn live on top. No op if
+     * static rendering is disabled or the content is still animating.
+     */
+    @SuppressLint("NewApi")
+    void enterStaticRender() {
+        if (mRenderCache == null || mStaticRendering || mDestroyed) return;
+        if (SystemClock.uptimeMillis() - mContentChangedAt < CONTENT_ANIMATION_DURATION) return;
+        // Every content layer is centered within the circle, so its bounds are all that is drawn
+        final int width = mCircleBackground.getWidth();
+        final int height = mCircleBackground.getHeight();
+        if (width == 0 || height == 0 || mContentGroup.getScaleX() != 1f) return;
+
+        if (mRenderKey == null || !mRenderKey.hasSize(width, height)) {
+            mRenderKey = new BubbleRenderCache.Key(mCircleBackground.getColor(),
+                    mIndicator.getText(), mIconIdentity, width, height);
+        }
+        final BubbleRenderCache.Key key = mRenderKey;
+        Bitmap bitmap = mRenderCache.get(key);
+        if (bitmap == null) {
+            bitmap = rasterizeContent(width, height);
+            mRenderCache.put(key, bitmap);
+        }
+
+        if (mStaticView == null) {
+            mStaticView = new ImageView(getContext());
+            if (Utils.isLollipopAbove()) {
+                // Bitmaps do not carry elevation shadows, so cast the circle's shadow from here
+                mStaticView.setElevation(mCircleBackground.getElevation());
+                mStaticView.setOutlineProvider(new ViewOutlineProvider() {
+                    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+                    @Override
+                    public void getOutline(View view, Outline outline) {
+                        outline.setOval(0, 0, view.getWidth(), view.getHeight());
+                    }
+                });
+            }
+            // Same bounds as the circle, below the badge
+            mContentGroup.addView(mStaticView, 0, new LayoutParams(
+                    LayoutParams.MATCH_PARENT, LayoutParams.MATCH_PARENT, Gravity.CENTER));
+        }
+        mStaticView.setImageBitmap(bitmap);
+        mStaticView.setVisibility(VISIBLE);
+
+        mIndicatorVisibility = mIndicator.getVisibility();
+        mFaviconVisibility = mFavicon.getVisibility();
+        mCircleBackground.setVisibility(INVISIBLE);
+        mRevealView.setVisibility(INVISIBLE);
+        mIndicator.setVisibility(INVISIBLE);
+        mFavicon.setVisibility(INVISIBLE);
+        mStaticRendering = true;
+    }
+
+    /**
+     * Draws the content layers live again.
+     */
+    void exitStaticRender() {
+        if (!mStaticRendering) return;
+        mStaticRendering = false;
+        if (mStaticView != null) {
+            mStaticView.setVisibility(GONE);
+            mStaticView.setImageDrawable(null);
+        }
+        mCircleBackground.setVisibility(VISIBLE);
+        mRevealView.setVisibility(VISIBLE);
+        mIndicator.setVisibility(mIndicatorVisibility);
+        mFavicon.setVisibility(mFaviconVisibility);
+    }
+
+    /**
+     * Must be called before the content layers change or start animating, so that they are drawn
+     * live until they settle.
+     */
+    private void onContentChanged() {
+        exitStaticRender();
+        mRenderKey = null;
+        mContentChangedAt = SystemClock.uptimeMillis();
+    }
+
+    @NonNull
+    private Bitmap rasterizeContent(int width, int height) {
+        final Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        final int badgeVisibility = mBadgeView.getVisibility();
+        mBadgeView.setVisibility(INVISIBLE);
+        final Canvas canvas = new Canvas(bitmap);
+        canvas.translate(-mCircleBackground.getLeft(), -mCircleBackground.getTop());
+        mContentGroup.draw(canvas);
+        mBadgeView.setVisibility(badgeVisibility);
+        return bitmap;
+    }
+
+    /**
+     * Reverts what closing animations changed on the content.
+     */
+    private void resetContent() {
+        onContentChanged();
+        mIconIdentity = null;
+        mContentGroup.animate().cancel();
+        mContentGroup.setAlpha(1f);
+        mFavicon.animate().cancel();
+        mFavicon.clearAnimation();
+        mFavicon.setRotation(0);
+        mFavicon.setImageDrawable(null);
+        mFavicon.setScaleType(ImageView.ScaleType.FIT_CENTER);
+        mFavicon.setVisibility(INVISIBLE);
+        mIndicator.animate().cancel();
+        mIndicator.setAlpha(1f);
+        mIndicator.setVisibility(VISIBLE);
+        mCircleBackground.animate().cancel();
+        mCircleBackground.setColor(mInflatedBackgroundColor);
+        mCircleBackground.restoreElevation();
+        mRevealView.clearAnimation();
     }
 
     /**
@@ -213,11 +450,12 @@ abstract class BubbleBase extends FrameLayout {
      * Initializes web head from user preferences
      */
     private void initContent() {
+        onContentChanged();
         BubbleStyle bubbleStyle = styleBubble(getContext(), mKey);
         mBubbleColor = bubbleStyle.getBackgroundColor();
         String indicator = bubbleStyle.getIndicatorText();
         if (bubbleStyle.getIconDrawable() != null) {
-            setFaviconDrawable(bubbleStyle.getIconDrawable());
+            setFaviconDrawable(bubbleStyle.getIconKey(), bubbleStyle.getIconDrawable());
             if (indicator != null) mIndicator.setText(indicator);
         } else {
             if (indicator == null) indicator = mKey.substring(0, 1);
@@ -226,23 +464,40 @@ abstract class BubbleBase extends FrameLayout {
         mIndicator.setTextColor(ColourUtils.getForegroundWhiteOrBlack(mBubbleColor));
         initRevealView(mBubbleColor);
 
-        if (sBadgeDrawable == null) {
-            sBadgeDrawable = new BadgeDrawable.Builder()
-                    .type(BadgeDrawable.TYPE_NUMBER)
-                    .badgeColor(ContextCompat.getColor(getContext(), R.color.colorAccent))
-                    .textColor(Color.WHITE)
-                    .number(WEB_HEAD_COUNT)
-                    .build();
-        } else {
-            sBadgeDrawable.setNumber(WEB_HEAD_COUNT);
-        }
         mBadgeView.setVisibility(VISIBLE);
-        mBadgeView.setText(new SpannableString(sBadgeDrawable.toSpannable()));
+        updateBadgeCount();
         updateBadgeColors(mBubbleColor);
 
         pad(mBadgeView, 5);
     }
 
+    /**
+     * Shows the current web head count in the badge. The text is only replaced when the count
+     * changed since it was last set on this web head.
+     */
+    void updateBadgeCount() {
+        final int count = getTotalCount();
+        if (count == mBadgeCount) return;
+        mBadgeCount = count;
+        mBadgeView.setText(getBadgeSpan(count));
+    }
+
+    @NonNull
+    private CharSequence getBadgeSpan(int count) {
+        CharSequence span = sBadgeSpans.get(count);
+        if (span == null) {
+            span = new BadgeDrawable.Builder()
+                    .type(BadgeDrawable.TYPE_NUMBER)
+                    .badgeColor(ContextCompat.getColor(getContext(), R.color.colorAccent))
+                    .textColor(Color.WHITE)
+                    .number(count)
+                    .build()
+                    .toSpannable();
+            sBadgeSpans.put(count, span);
+        }
+        return span;
+    }
+
     protected boolean pad(View v, final int padDP) {
         if (Utils.isLollipopAbove()) return false;
         final int pad = dpToPx(padDP);
@@ -261,8 +516,15 @@ abstract class BubbleBase extends FrameLayout {
 
     /**
      * Wrapper around window manager to update this view. Called to move the web head usually.
+     * Web heads drawn by the compositor are translated instead, which only invalidates the shared
+     * window.
      */
     void updateView() {
+        if (mHosted) {
+            setTranslationX(mWindowParams.x);
+            setTranslationY(mWindowParams.y);
+            return;
+        }
         try {
             if (mMaster) {
                 masterX = mWindowParams.x;
@@ -274,6 +536,36 @@ abstract class BubbleBase extends FrameLayout {
         }
     }
 
+    void setCompositor(@Nullable BubbleCompositor compositor) {
+        mCompositor = compositor;
+    }
+
+    /**
+     * Moves this web head between its own window and the compositor. Only the master needs a window
+     * of its own since it is the only one receiving touches.
+     *
+     * @param hosted true to draw this web head through the compositor
+     */
+    private void setHosted(boolean hosted) {
+        if (mCompositor == null || mDestroyed || mHosted == hosted) return;
+        try {
+            if (hosted) {
+                sWindowManager.removeView(this);
+                mCompositor.host(this);
+            } else {
+                mCompositor.release(this);
+                setTranslationX(0);
+                setTranslationY(0);
+                sWindowManager.addView(this, mWindowParams);
+            }
+        } catch (Exception e) {
+            BLog.e("Could not move web head %s: %s", mKey, e.getMessage());
+            return;
+        }
+        mHosted = hosted;
+        updateView();
+    }
+
     /**
      * @return true if current web head is the last active one
      */
@@ -286,12 +578,26 @@ abstract class BubbleBase extends FrameLayout {
             if (mCircleBackground != null && mRevealView != null) {
                 mCircleBackground.setElevation(elevationPX);
                 mRevealView.setElevation(elevationPX + 1);
+                // Casts the shadow of the circle while the content is static
+                if (mStaticView != null) mStaticView.setElevation(elevationPX);
             }
         }
     }
 
     @NonNull
     public Animator getRevealAnimator(@ColorInt final int newBubbleColor) {
+        return getRevealAnimator(newBubbleColor, ColourUtils.getForegroundWhiteOrBlack(newBubbleColor));
+    }
+
+    /**
+     * @param newBubbleColor  new color of the bubble
+     * @param foregroundColor indicator text color readable on the new color, usually computed off the
+     *                        main thread along with the color
+     * @return animator revealing the new color
+     */
+    @NonNull
+    public Animator getRevealAnimator(@ColorInt final int newBubbleColor, @ColorInt final int foregroundColor) {
+        onContentChanged();
         mRevealView.clearAnimation();
         initRevealView(newBubbleColor);
 
@@ -309,7 +615,7 @@ abstract class BubbleBase extends FrameLayout {
                 updateBadgeColors(mBubbleColor);
                 if (mIndicator != null && mCircleBackground != null && mRevealView != null) {
                     mCircleBackground.setColor(newBubbleColor);
-//                    mIndicator.setTextColor(ColorUtil.getForegroundWhiteOrBlack(newBubbleColor)); //TODO
+                    mIndicator.setTextColor(foregroundColor);
                     mRevealView.setLayerType(LAYER_TYPE_NONE, null);
                     mRevealView.setScaleX(0f);
                     mRevealView.setScaleY(0f);
@@ -334,6 +640,7 @@ abstract class BubbleBase extends FrameLayout {
             start.run();
             end.run();
         }
+        onContentChanged();
         mRevealView.clearAnimation();
         mRevealView.setColor(mCircleBackground.getColor());
         mRevealView.setScaleX(1f);
@@ -386,6 +693,7 @@ abstract class BubbleBase extends FrameLayout {
      * is visible by hiding indicators.
      */
     void crossFadeFaviconToX() {
+        onContentChanged();
         mFavicon.setVisibility(VISIBLE);
         mFavicon.clearAnimation();
         mFavicon.setScaleType(ImageView.ScaleType.CENTER);
@@ -439,10 +747,16 @@ abstract class BubbleBase extends FrameLayout {
         return mKey;
     }
 
+    /**
+     * @return the bitmap of the favicon, if any. Favicons obtained through {@link IconCache} are
+     * shared with other web heads, so the bitmap must not be recycled or modified
+     */
     @Nullable
     public Bitmap getFaviconBitmap() {
         try {
-            final RoundedBitmapDrawable roundedBitmapDrawable = (RoundedBitmapDrawable) getFaviconDrawable();
+            final Drawable favicon = getFaviconDrawable();
+            if (favicon instanceof BitmapDrawable) return ((BitmapDrawable) favicon).getBitmap();
+            final RoundedBitmapDrawable roundedBitmapDrawable = (RoundedBitmapDrawable) favicon;
             return roundedBitmapDrawable != null ? roundedBitmapDrawable.getBitmap() : null;
         } catch (Exception e) {
             BLog.e("Error while getting favicon bitmap: %s", e.getMessage());
@@ -465,12 +779,45 @@ abstract class BubbleBase extends FrameLayout {
     }
 
     public void setFaviconDrawable(@NonNull final Drawable faviconDrawable) {
+        setFaviconDrawable(null, faviconDrawable);
+    }
+
+    /**
+     * Shows the favicon downsampled to the favicon view, through the shared {@link IconCache}.
+     *
+     * @param key             unique key of the favicon to share it with other web heads, or null
+     * @param faviconDrawable favicon of any size
+     */
+    public void setFaviconDrawable(@Nullable String key, @NonNull final Drawable faviconDrawable) {
+        if (mIndicator != null && mFavicon != null) {
+            final Bitmap favicon = IconCache.get().obtain(key, faviconDrawable, getFaviconSize());
+            setFaviconBitmap(favicon);
+        }
+    }
+
+    /**
+     * Shows an icon loaded by {@link IconLoader} and reveals
+     * its color, if it has one.
+     */
+    public void setFavicon(@NonNull IconLoader.Result result) {
+        setFaviconBitmap(result.icon);
+        if (result.hasColor) getRevealAnimator(result.color, result.foregroundColor).start();
+    }
+
+    /**
+     * Shows a favicon bitmap that already fits the favicon view.
+     *
+     * @param favicon favicon, usually obtained from {@link IconCache}
+     */
+    void setFaviconBitmap(@NonNull Bitmap favicon) {
         if (mIndicator != null && mFavicon != null) {
+            onContentChanged();
+            mIconIdentity = favicon;
             mIndicator.animate().alpha(0).withLayer().start();
             TransitionDrawable transitionDrawable = new TransitionDrawable(
                     new Drawable[]{
                             new ColorDrawable(Color.TRANSPARENT),
-                            faviconDrawable
+                            new BitmapDrawable(getResources(), favicon)
                     });
             mFavicon.setVisibility(VISIBLE);
             mFavicon.setImageDrawable(transitionDrawable);
@@ -479,12 +826,31 @@ abstract class BubbleBase extends FrameLayout {
         }
     }
 
+    /**
+     * @return size in pixels that favicons are downsampled to
+     */
+    public int getFaviconSize() {
+        final int size = mFavicon.getLayoutParams().width;
+        return size > 0 ? size : dpToPx(FAVICON_SIZE_DP);
+    }
+
     @SuppressWarnings("UnusedParameters")
     void destroySelf(boolean receiveCallback) {
         mDestroyed = true;
         RemoveBubble.disappear();
+        detachFromWindow();
+    }
+
+    /**
+     * Removes the content and the window of this web head.
+     */
+    void detachFromWindow() {
+        exitStaticRender();
         removeView(mContentGroup);
-        if (sWindowManager != null)
+        if (mHosted) {
+            mCompositor.release(this);
+            mHosted = false;
+        } else if (sWindowManager != null)
             try {
                 sWindowManager.removeView(this);
             } catch (Exception ignored) {
@@ -501,12 +867,17 @@ abstract class BubbleBase extends FrameLayout {
             mBadgeView.setVisibility(INVISIBLE);
         } else {
             mBadgeView.setVisibility(VISIBLE);
-            sBadgeDrawable.setNumber(WEB_HEAD_COUNT);
+            updateBadgeCount();
             setInQueue(false);
         }
+        setHosted(!master);
         onMasterChanged(master);
     }
 
+    public boolean isInQueue() {
+        return mInQueue;
+    }
+
     public void setInQueue(boolean inQueue) {
         this.mInQueue = inQueue;
         if (inQueue) {
@@ -515,29 +886,4 @@ abstract class BubbleBase extends FrameLayout {
             setVisibility(VISIBLE);
         }
     }
-
-    /**
-     * Helper class to hold screen boundaries
-     */
-    class ScreenBounds {
-        /**
-         * Amount of web head that will be displaced off of the screen horizontally
-         */
-        private static final double DISPLACE_PERC = 0.7;
-
-        public int left;
-        public int right;
-        public int top;
-        public int bottom;
-
-        ScreenBounds(int dispWidth, int dispHeight, int bubbleWidth) {
-            if (bubbleWidth == 0 || dispWidth == 0 || dispHeight == 0) {
-                throw new IllegalArgumentException("Width of web head or screen size cannot be 0");
-            }
-            right = (int) (dispWidth - (bubbleWidth * DISPLACE_PERC));
-            left = (int) (bubbleWidth * (1 - DISPLACE_PERC)) * -1;
-            top = dpToPx(25);
-            bottom = (int) (dispHeight * 0.85);
-        }
-    }
 }
@@ -0,0 +1,95 @@
+package com.pitchedapps.bubble.library.ui;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.graphics.PixelFormat;
+import android.support.annotation.NonNull;
+import android.view.Gravity;
+import android.view.WindowManager;
+import android.widget.FrameLayout;
+
+import com.pitchedapps.bubble.library.logging.BLog;
+
+/**
+ * Single overlay window that draws every slave bubble of the chain.
+ * <p>
+ * By default each bubble owns a window, so a drag with a full chain results in one
+ * {@link WindowManager#updateViewLayout} per bubble per frame. When a service opts into the
+ * compositor, slaves are reparented into this view and moved with translations instead, which only
+ * invalidates this window. The master keeps its own window since it must receive touches, and this
+ * window is never touchable.
+ * <p>
+ * The window covers the whole screen so that slaves can be moved without resizing it, which adds a
+ * screen-sized translucent layer to the composition. It is therefore only attached while it hosts
+ * at least one slave, and a lone master costs nothing.
+ */
+@SuppressLint("ViewConstructor")
+public class BubbleCompositor extends FrameLayout {
+
+    private final WindowManager mWindowManager;
+    private final WindowManager.LayoutParams mWindowParams;
+
+    private boolean mAttached;
+
+    @SuppressLint("RtlHardcoded")
+    public BubbleCompositor(@NonNull Context context) {
+        super(context);
+        mWindowManager = (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
+        setClipChildren(false);
+
+        mWindowParams = new WindowManager.LayoutParams(
+                WindowManager.LayoutParams.MATCH_PARENT,
+                WindowManager.LayoutParams.MATCH_PARENT,
+                WindowManager.LayoutParams.TYPE_SYSTEM_ALERT,
+                WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE
+                        | WindowManager.LayoutParams.FLAG_NOT_TOUCHABLE
+                        | WindowManager.LayoutParams.FLAG_LAYOUT_NO_LIMITS
+                        | WindowManager.LayoutParams.FLAG_HARDWARE_ACCELERATED,
+                PixelFormat.TRANSLUCENT);
+        mWindowParams.gravity = Gravity.TOP | Gravity.LEFT;
+    }
+
+    /**
+     * Draws the given bubble inside this window. The bubble must already be removed from its own
+     * window.
+     *
+     * @param bubble bubble to host
+     */
+    @SuppressLint("RtlHardcoded")
+    void host(@NonNull BubbleBase bubble) {
+        if (bubble.getParent() == this) return;
+        addView(bubble, new LayoutParams(LayoutParams.WRAP_CONTENT, LayoutParams.WRAP_CONTENT,
+                Gravity.TOP | Gravity.LEFT));
+        if (!mAttached) {
+            mWindowManager.addView(this, mWindowParams);
+            mAttached = true;
+        }
+    }
+
+    /**
+     * Stops drawing the given bubble so that it may be attached to its own window again.
+     *
+     * @param bubble bubble to release
+     */
+    void release(@NonNull BubbleBase bubble) {
+        if (bubble.getParent() != this) return;
+        removeView(bubble);
+        if (getChildCount() == 0) detach();
+    }
+
+    public void destroySelf() {
+        removeAllViews();
+        detach();
+        BLog.d("Bubble compositor detached");
+    }
+
+    private void detach() {
+        if (mAttached) {
+            try {
+                mWindowManager.removeView(this);
+            } catch (Exception ignored) {
+            }
+            mAttached = false;
+        }
+    }
+}
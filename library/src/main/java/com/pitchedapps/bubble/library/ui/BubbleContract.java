@@ -1,8 +1,12 @@
 package com.pitchedapps.bubble.library.ui;
 
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 
 import com.facebook.rebound.Spring;
+import com.pitchedapps.bubble.library.physics.DropTargetIndex;
+import com.pitchedapps.bubble.library.physics.SpringFrameBatcher;
+import com.pitchedapps.bubble.library.utils.Scheduler;
 
 /**
  * Created by Arun on 08/08/2016.
@@ -17,6 +21,48 @@ public interface BubbleContract<T extends Bubble> {
     @NonNull
     Spring newSpring();
 
+    /**
+     * @return batcher flushing position updates once per frame, shared with the springs from {@link #newSpring()}
+     */
+    @NonNull
+    SpringFrameBatcher getFrameBatcher();
+
+    /**
+     * @return shared window to draw slave bubbles in, or null if every bubble should own a window
+     */
+    @Nullable
+    BubbleCompositor getCompositor();
+
+    /**
+     * @return cache of rasterized bubbles to draw them as a single layer while moving, or null to
+     * always draw them live
+     */
+    @Nullable
+    BubbleRenderCache getRenderCache();
+
+    /**
+     * @return scheduler running delayed bubble behavior on the main thread
+     */
+    @NonNull
+    Scheduler getScheduler();
+
+    /**
+     * @return magnetic targets that dragged bubbles lock onto, including the remove view
+     */
+    @NonNull
+    DropTargetIndex getDropTargets();
+
+    /**
+     * Called when a finger goes down on the master bubble.
+     */
+    void onMasterTouchDown();
+
+    /**
+     * Called when the finger on the master bubble is lifted, or the gesture is cancelled. Bubbles
+     * that move from here on are coasting.
+     */
+    void onMasterTouchUp();
+
     void onMasterLockedToRemove();
 
     void onMasterReleasedFromRemove();
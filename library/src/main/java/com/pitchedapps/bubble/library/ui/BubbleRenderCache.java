@@ -0,0 +1,105 @@
+package com.pitchedapps.bubble.library.ui;
+
+import android.graphics.Bitmap;
+import android.support.annotation.ColorInt;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.util.LruCache;
+
+/**
+ * Rasterized bubble appearances shared by all web heads of a service, bounded by the total number
+ * of bytes of the cached bitmaps.
+ * <p>
+ * Web heads with the same appearance, which is what {@link com.pitchedapps.bubble.library.item.BubbleStyle}
+ * resolves to, share a single bitmap.
+ */
+public class BubbleRenderCache {
+
+    /**
+     * Appearance of a web head at the time it is rasterized.
+     */
+    static final class Key {
+        @ColorInt
+        private final int backgroundColor;
+        @NonNull
+        private final String indicatorText;
+        // Compared by identity, cached favicons share the same bitmap
+        @Nullable
+        private final Object icon;
+        private final int width;
+        private final int height;
+        // Computed once, the key is looked up on every switch to static rendering
+        private final int hash;
+
+        Key(@ColorInt int backgroundColor, @Nullable CharSequence indicatorText, @Nullable Object icon,
+            int width, int height) {
+            this.backgroundColor = backgroundColor;
+            this.indicatorText = indicatorText == null ? "" : indicatorText.toString();
+            this.icon = icon;
+            this.width = width;
+            this.height = height;
+            int result = backgroundColor;
+            result = 31 * result + this.indicatorText.hashCode();
+            result = 31 * result + System.identityHashCode(icon);
+            result = 31 * result + width;
+            result = 31 * result + height;
+            hash = result;
+        }
+
+        /**
+         * @return true if the key describes content of the given size
+         */
+        boolean hasSize(int width, int height) {
+            return this.width == width && this.height == height;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            final Key key = (Key) o;
+            return hash == key.hash
+                    && backgroundColor == key.backgroundColor
+                    && width == key.width
+                    && height == key.height
+                    && icon == key.icon
+                    && indicatorText.equals(key.indicatorText);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private final LruCache<Key, Bitmap> mBitmaps;
+
+    /**
+     * @param maxBytes maximum size of all cached bitmaps together
+     */
+    public BubbleRenderCache(int maxBytes) {
+        mBitmaps = new LruCache<Key, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(Key key, Bitmap bitmap) {
+                return bitmap.getByteCount();
+            }
+        };
+    }
+
+    @Nullable
+    Bitmap get(@NonNull Key key) {
+        return mBitmaps.get(key);
+    }
+
+    void put(@NonNull Key key, @NonNull Bitmap bitmap) {
+        mBitmaps.put(key, bitmap);
+    }
+
+    /**
+     * Drops every cached bitmap. Web heads currently drawing one keep it until they go back to
+     * drawing live.
+     */
+    public void clear() {
+        mBitmaps.evictAll();
+    }
+}
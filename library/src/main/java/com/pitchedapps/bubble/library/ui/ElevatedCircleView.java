@@ -1,5 +1,6 @@
 package com.pitchedapps.bubble.library.ui;
 
+import android.annotation.SuppressLint;
 import android.annotation.TargetApi;
 import android.content.Context;
 import android.graphics.Outline;
@@ -27,14 +28,18 @@ public class ElevatedCircleView extends CircleView {
     public ElevatedCircleView(Context context, AttributeSet attrs, int defStyleAttr) {
         super(context, attrs, defStyleAttr);
         if (!Utils.isLollipopAbove()) {
-            float shadowR = context.getResources().getDimension(R.dimen.web_head_shadow_radius);
-            float shadowDx = context.getResources().getDimension(R.dimen.web_head_shadow_dx);
-            float shadowDy = context.getResources().getDimension(R.dimen.web_head_shadow_dy);
-            mBgPaint.setShadowLayer(shadowR, shadowDx, shadowDy, 0x55000000);
+            applyShadowLayer();
             setLayerType(LAYER_TYPE_SOFTWARE, null);
         }
     }
 
+    private void applyShadowLayer() {
+        float shadowR = getResources().getDimension(R.dimen.web_head_shadow_radius);
+        float shadowDx = getResources().getDimension(R.dimen.web_head_shadow_dx);
+        float shadowDy = getResources().getDimension(R.dimen.web_head_shadow_dy);
+        mBgPaint.setShadowLayer(shadowR, shadowDx, shadowDy, 0x55000000);
+    }
+
     @Override
     protected void onAttachedToWindow() {
         super.onAttachedToWindow();
@@ -61,4 +66,18 @@ public class ElevatedCircleView extends CircleView {
             invalidate();
         }
     }
+
+    /**
+     * Reverts {@link #clearElevation()} on pre L devices and resets the translation that closing
+     * animations apply on post L devices.
+     */
+    @SuppressLint("NewApi")
+    public void restoreElevation() {
+        if (Utils.isLollipopAbove()) {
+            setTranslationZ(0);
+        } else {
+            applyShadowLayer();
+            invalidate();
+        }
+    }
 }
@@ -8,6 +8,7 @@ import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.PixelFormat;
 import android.graphics.PorterDuff;
+import android.support.annotation.NonNull;
 import android.support.v4.content.ContextCompat;
 import android.util.DisplayMetrics;
 import android.view.Gravity;
@@ -25,6 +26,8 @@ import com.mikepenz.iconics.IconicsDrawable;
 
 import com.pitchedapps.bubble.library.R;
 import com.pitchedapps.bubble.library.logging.BLog;
+import com.pitchedapps.bubble.library.physics.DropTarget;
+import com.pitchedapps.bubble.library.physics.SpringConfigs;
 import com.pitchedapps.bubble.library.utils.Utils;
 
 /**
@@ -33,7 +36,9 @@ import com.pitchedapps.bubble.library.utils.Utils;
 @SuppressLint("ViewConstructor")
 public class RemoveBubble extends FrameLayout {
 
-    static final double MAGNETISM_THRESHOLD = Utils.dpToPx(120);
+    public static final int MAGNETISM_THRESHOLD = Utils.dpToPx(120);
+    // Id of the drop target of the remove view, see createDropTarget()
+    public static final int DROP_TARGET_ID = -1;
     private static WindowManager sWindowManager;
     private static RemoveBubble sOurInstance;
 
@@ -51,7 +56,9 @@ public class RemoveBubble extends FrameLayout {
 
     private boolean mGrew;
 
-    private int[] mCentrePoint = null;
+    private boolean mCentreSet;
+    private int mCentreX;
+    private int mCentreY;
 
     @SuppressLint("RtlHardcoded")
     private RemoveBubble(Context context, WindowManager windowManager) {
@@ -75,9 +82,7 @@ public class RemoveBubble extends FrameLayout {
         mHidden = true;
 
         mWindowParams.gravity = Gravity.LEFT | Gravity.TOP;
-        int offset = getAdaptWidth() / 2;
-        mWindowParams.x = (mDispWidth / 2) - offset;
-        mWindowParams.y = mDispHeight - (mDispHeight / 6) - offset;
+        placeWindow();
 
         setUpSprings();
         initCentreCoords();
@@ -136,7 +141,7 @@ public class RemoveBubble extends FrameLayout {
 
         sWindowManager.removeView(this);
 
-        mCentrePoint = null;
+        mCentreSet = false;
 
         sOurInstance = null;
         BLog.d("Remove view detached and killed");
@@ -146,18 +151,71 @@ public class RemoveBubble extends FrameLayout {
         return Math.max(getWidth(), RemoveBubbleCircle.getSizePx());
     }
 
-    int[] getCenterCoordinates() {
-        if (mCentrePoint == null) {
+    /**
+     * Creates the drop target of the remove view. Web heads dropped on it are destroyed.
+     *
+     * @return target centred on the remove view
+     */
+    @NonNull
+    public DropTarget createDropTarget() {
+        return new DropTarget(DROP_TARGET_ID, getCenterX(), getCenterY(), MAGNETISM_THRESHOLD,
+                SpringConfigs.SNAP, new DropTarget.Listener() {
+            @Override
+            public void onBubbleEnter(@NonNull DropTarget target, @NonNull String key) {
+                if (sOurInstance != null) sOurInstance.grow();
+            }
+
+            @Override
+            public void onBubbleExit(@NonNull DropTarget target, @NonNull String key) {
+                if (sOurInstance != null) sOurInstance.shrink();
+            }
+
+            @Override
+            public void onBubbleDrop(@NonNull DropTarget target, @NonNull String key) {
+                // Web heads destroy themselves when released on the remove view
+            }
+        });
+    }
+
+    /**
+     * Moves the remove view to its place on a display of the given size.
+     */
+    public void onDisplayChanged(int dispWidth, int dispHeight) {
+        mDispWidth = dispWidth;
+        mDispHeight = dispHeight;
+        placeWindow();
+        sWindowManager.updateViewLayout(this, mWindowParams);
+        initCentreCoords();
+    }
+
+    /**
+     * Centres the window horizontally, a sixth of the display height above the bottom.
+     */
+    private void placeWindow() {
+        final int offset = getAdaptWidth() / 2;
+        mWindowParams.x = (mDispWidth / 2) - offset;
+        mWindowParams.y = mDispHeight - (mDispHeight / 6) - offset;
+    }
+
+    public int getCenterX() {
+        if (!mCentreSet) {
+            initCentreCoords();
+        }
+        return mCentreX;
+    }
+
+    public int getCenterY() {
+        if (!mCentreSet) {
             initCentreCoords();
         }
-        return mCentrePoint;
+        return mCentreY;
     }
 
     private void initCentreCoords() {
         int offset = getAdaptWidth() / 2;
-        int rX = getWindowParams().x + offset;
-        int rY = getWindowParams().y + offset;
-        mCentrePoint = new int[]{rX, rY};
+        mCentreX = getWindowParams().x + offset;
+        mCentreY = getWindowParams().y + offset;
+        mCentreSet = true;
     }
 
     private void setUpSprings() {
@@ -225,6 +283,8 @@ public class RemoveBubble extends FrameLayout {
         private static int sSizePx;
         private static int sDiameterPx;
         private final Paint mBgPaint;
+        // Created on first draw and reused since the circle is redrawn while it scales
+        private Bitmap mDeleteIcon;
 
         public RemoveBubbleCircle(Context context) {
             super(context);
@@ -269,10 +329,13 @@ public class RemoveBubble extends FrameLayout {
         }
 
         private void drawDeleteIcon(Canvas canvas) {
-            Bitmap deleteIcon = new IconicsDrawable(getContext())
-                    .icon(GoogleMaterial.Icon.gmd_delete)
-                    .color(Color.WHITE)
-                    .sizeDp(18).toBitmap();
+            if (mDeleteIcon == null) {
+                mDeleteIcon = new IconicsDrawable(getContext())
+                        .icon(GoogleMaterial.Icon.gmd_delete)
+                        .color(Color.WHITE)
+                        .sizeDp(18).toBitmap();
+            }
+            final Bitmap deleteIcon = mDeleteIcon;
             int cHeight = canvas.getClipBounds().height();
             int cWidth = canvas.getClipBounds().width();
             float x = cWidth / 2f - deleteIcon.getWidth() / 2;
@@ -0,0 +1,43 @@
+package com.pitchedapps.bubble.library.utils;
+
+import android.os.SystemClock;
+import android.view.Choreographer;
+
+import com.pitchedapps.bubble.library.physics.SpringIdleTracker;
+import com.pitchedapps.bubble.library.physics.ThrottledSpringLooper;
+
+/**
+ * {@link ThrottledSpringLooper} driven by the display vsync, at whatever rate the display refreshes.
+ * Must be created on the main thread.
+ */
+public class ChoreographerSpringLooper extends ThrottledSpringLooper {
+
+    private final Choreographer mChoreographer = Choreographer.getInstance();
+    private final Choreographer.FrameCallback mFrameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            // Frame times share the time base of uptimeMillis
+            ChoreographerSpringLooper.this.doFrame(frameTimeNanos / 1000000);
+        }
+    };
+
+    public ChoreographerSpringLooper() {
+        super(new SpringIdleTracker.Clock() {
+            @Override
+            public long now() {
+                return SystemClock.uptimeMillis();
+            }
+        });
+    }
+
+    @Override
+    protected void postFrame() {
+        mChoreographer.removeFrameCallback(mFrameCallback);
+        mChoreographer.postFrameCallback(mFrameCallback);
+    }
+
+    @Override
+    protected void cancelFrame() {
+        mChoreographer.removeFrameCallback(mFrameCallback);
+    }
+}
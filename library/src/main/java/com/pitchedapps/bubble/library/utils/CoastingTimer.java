@@ -0,0 +1,52 @@
+package com.pitchedapps.bubble.library.utils;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Coasts the master further out of the screen once it was left alone for {@link #COASTING_DELAY}.
+ * <p>
+ * The delay is a single one-shot task rather than periodic work, so it stays scheduled while the
+ * springs rest. A master that settles early still only coasts once the delay has passed.
+ */
+public class CoastingTimer {
+    // Delay after the last touch before the master coasts further out of the screen
+    public static final long COASTING_DELAY = 6000;
+
+    private final Scheduler mScheduler;
+    private final Runnable mCoast;
+    // True while mTask is pending
+    private boolean mScheduled;
+    private final Runnable mTask = new Runnable() {
+        @Override
+        public void run() {
+            mScheduled = false;
+            mCoast.run();
+        }
+    };
+
+    /**
+     * @param scheduler runs the delay
+     * @param coast     moves the master out of the screen once the delay has passed
+     */
+    public CoastingTimer(@NonNull Scheduler scheduler, @NonNull Runnable coast) {
+        mScheduler = scheduler;
+        mCoast = coast;
+    }
+
+    /**
+     * Starts the delay again from now.
+     */
+    public void schedule() {
+        mScheduler.schedule(mTask, COASTING_DELAY);
+        mScheduled = true;
+    }
+
+    public void cancel() {
+        mScheduler.cancel(mTask);
+        mScheduled = false;
+    }
+
+    public boolean isScheduled() {
+        return mScheduled;
+    }
+}
@@ -0,0 +1,39 @@
+package com.pitchedapps.bubble.library.utils;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+
+/**
+ * {@link Scheduler} posting to the main looper, so delayed work runs on the same thread as touch
+ * handling and the spring loop without keeping a thread of its own.
+ */
+public class HandlerScheduler implements Scheduler {
+
+    private final Handler mHandler;
+
+    public HandlerScheduler() {
+        this(new Handler(Looper.getMainLooper()));
+    }
+
+    public HandlerScheduler(@NonNull Handler handler) {
+        mHandler = handler;
+    }
+
+    @Override
+    public void schedule(@NonNull Runnable task, long delayMillis) {
+        mHandler.removeCallbacks(task);
+        mHandler.postDelayed(task, delayMillis);
+    }
+
+    @Override
+    public void cancel(@NonNull Runnable task) {
+        mHandler.removeCallbacks(task);
+    }
+
+    @Override
+    public long now() {
+        return SystemClock.uptimeMillis();
+    }
+}
@@ -0,0 +1,149 @@
+package com.pitchedapps.bubble.library.utils;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.util.LruCache;
+
+/**
+ * Process wide cache of bubble icons, downsampled to the size they are drawn at and bounded by the
+ * total number of bytes of the cached bitmaps.
+ * <p>
+ * Icons given with a key are shared between every bubble and service using the same key and size,
+ * so the source image only needs to be resident until it was downsampled once.
+ */
+public class IconCache {
+
+    // Icons are a small part of the overlay, a sixty-fourth of the heap leaves room for a few hundred
+    private static final int MAX_BYTES = (int) Math.min(Runtime.getRuntime().maxMemory() / 64, 8 * 1024 * 1024);
+
+    private static IconCache sInstance;
+
+    private final LruCache<String, Bitmap> mIcons;
+
+    private IconCache(int maxBytes) {
+        mIcons = new LruCache<String, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return bitmap.getByteCount();
+            }
+        };
+    }
+
+    @NonNull
+    public static synchronized IconCache get() {
+        if (sInstance == null) sInstance = new IconCache(MAX_BYTES);
+        return sInstance;
+    }
+
+    /**
+     * Returns the icon downsampled to fit in a square of the given size. Icons with a key are cached,
+     * so the drawable is only drawn the first time the key is seen at this size.
+     *
+     * @param key  unique key of the icon, or null to downsample without caching
+     * @param icon source icon
+     * @param size size in pixels of the square the icon is drawn in
+     * @return bitmap no larger than the size, shared with every caller of the same key and size, so
+     * it must not be recycled or modified
+     */
+    @NonNull
+    public Bitmap obtain(@Nullable String key, @NonNull Drawable icon, int size) {
+        final Bitmap cached = key != null ? peek(key, size) : null;
+        // The drawn bitmap already fits, so the bitmap overload caches it as is
+        return cached != null ? cached : obtain(key, downsample(icon, size), size);
+    }
+
+    /**
+     * Same as {@link #obtain(String, Drawable, int)} for an already decoded bitmap.
+     */
+    @NonNull
+    public Bitmap obtain(@Nullable String key, @NonNull Bitmap icon, int size) {
+        if (key == null) return downsample(icon, size);
+        final String cacheKey = cacheKey(key, size);
+        Bitmap bitmap = mIcons.get(cacheKey);
+        if (bitmap == null) {
+            bitmap = downsample(icon, size);
+            mIcons.put(cacheKey, bitmap);
+        }
+        return bitmap;
+    }
+
+    /**
+     * @return the cached icon of the key at the given size, or null if it is not cached
+     */
+    @Nullable
+    public Bitmap peek(@NonNull String key, int size) {
+        return mIcons.get(cacheKey(key, size));
+    }
+
+    public void clear() {
+        mIcons.evictAll();
+    }
+
+    @NonNull
+    private static String cacheKey(@NonNull String key, int size) {
+        return key + '@' + size;
+    }
+
+    /**
+     * Scales the bitmap down so that it fits in the size, keeping its aspect ratio. Bitmaps that
+     * already fit are returned as is.
+     */
+    @NonNull
+    static Bitmap downsample(@NonNull Bitmap icon, int size) {
+        final int width = icon.getWidth();
+        final int height = icon.getHeight();
+        if (width <= size && height <= size) return icon;
+        return Bitmap.createScaledBitmap(icon, fitToSize(width, width, height, size),
+                fitToSize(height, width, height, size), true);
+    }
+
+    /**
+     * Draws the drawable into a bitmap that fits in the size, keeping its aspect ratio. Drawables
+     * without an intrinsic size fill the square.
+     */
+    @NonNull
+    static Bitmap downsample(@NonNull Drawable icon, int size) {
+        if (icon instanceof BitmapDrawable) {
+            final Bitmap bitmap = ((BitmapDrawable) icon).getBitmap();
+            if (bitmap != null) return downsample(bitmap, size);
+        }
+        int width = icon.getIntrinsicWidth();
+        int height = icon.getIntrinsicHeight();
+        if (width <= 0 || height <= 0) {
+            width = size;
+            height = size;
+        } else {
+            final int intrinsicWidth = width;
+            width = fitToSize(intrinsicWidth, intrinsicWidth, height, size);
+            height = fitToSize(height, intrinsicWidth, height, size);
+        }
+        final Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        // The drawable may be shared by the host app, so leave its bounds as they were
+        final Rect bounds = icon.copyBounds();
+        icon.setBounds(0, 0, width, height);
+        icon.draw(new Canvas(bitmap));
+        icon.setBounds(bounds);
+        return bitmap;
+    }
+
+    /**
+     * Scales one side of an image down so that the whole image fits in a square, keeping its aspect
+     * ratio. Images that already fit keep their size.
+     *
+     * @param length side to scale, either the width or the height
+     * @param width  width of the image
+     * @param height height of the image
+     * @param size   size of the square
+     * @return the scaled side, at least 1
+     */
+    static int fitToSize(int length, int width, int height, int size) {
+        if (width <= size && height <= size) return length;
+        final float scale = Math.min((float) size / width, (float) size / height);
+        return Math.max(1, Math.round(length * scale));
+    }
+}
@@ -0,0 +1,261 @@
+package com.pitchedapps.bubble.library.utils;
+
+import android.content.ContentResolver;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Color;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.ColorInt;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.pitchedapps.bubble.library.logging.BLog;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Decodes bubble icons and extracts their colors on worker threads, then delivers the results on
+ * the main thread. Decoded icons are downsampled to the requested size and kept in
+ * {@link IconCache}, so icons that were already loaded once skip decoding.
+ * <p>
+ * Loads of the same key may finish in any order on the workers, so only the result of the latest
+ * load of a key is delivered.
+ */
+public class IconLoader {
+
+    /**
+     * Encoded image that can be read more than once, first for its bounds and then for its pixels.
+     */
+    public interface Source {
+        @Nullable
+        Bitmap decode(@NonNull BitmapFactory.Options options) throws IOException;
+    }
+
+    public interface Callback {
+        /**
+         * Called on the main thread once the icon was decoded.
+         */
+        void onIconLoaded(@NonNull Result result);
+    }
+
+    public static final class Result {
+        @NonNull
+        public final String key;
+        @NonNull
+        public final Bitmap icon;
+        // False if the icon has no opaque pixel to take a color from
+        public final boolean hasColor;
+        // Dominant color of the opaque pixels
+        @ColorInt
+        public final int color;
+        // Text color readable on top of color
+        @ColorInt
+        public final int foregroundColor;
+
+        Result(@NonNull String key, @NonNull Bitmap icon, boolean hasColor, @ColorInt int color,
+               @ColorInt int foregroundColor) {
+            this.key = key;
+            this.icon = icon;
+            this.hasColor = hasColor;
+            this.color = color;
+            this.foregroundColor = foregroundColor;
+        }
+    }
+
+    private static final int WORKER_COUNT = 2;
+    // Pixels with less alpha do not count towards the icon color
+    private static final int MIN_COLOR_ALPHA = 128;
+    // Bits kept per channel when grouping pixels by color, 4096 buckets in total
+    private static final int BUCKET_BITS = 4;
+
+    private final ExecutorService mWorkers;
+    private final Handler mMainHandler;
+    private volatile boolean mShutdown;
+    // Sequence number of the latest load of each key with a pending result, main thread only
+    private final Map<String, Integer> mLatestLoads = new HashMap<>();
+    private int mLoadSequence;
+
+    public IconLoader() {
+        this(Executors.newFixedThreadPool(WORKER_COUNT), new Handler(Looper.getMainLooper()));
+    }
+
+    public IconLoader(@NonNull ExecutorService workers, @NonNull Handler mainHandler) {
+        mWorkers = workers;
+        mMainHandler = mainHandler;
+    }
+
+    @NonNull
+    public static Source fromUri(@NonNull final ContentResolver resolver, @NonNull final Uri uri) {
+        return new Source() {
+            @Nullable
+            @Override
+            public Bitmap decode(@NonNull BitmapFactory.Options options) throws IOException {
+                final InputStream stream = resolver.openInputStream(uri);
+                if (stream == null) return null;
+                try {
+                    return BitmapFactory.decodeStream(stream, null, options);
+                } finally {
+                    stream.close();
+                }
+            }
+        };
+    }
+
+    @NonNull
+    public static Source fromBytes(@NonNull final byte[] data) {
+        return new Source() {
+            @Nullable
+            @Override
+            public Bitmap decode(@NonNull BitmapFactory.Options options) {
+                return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+            }
+        };
+    }
+
+    /**
+     * Decodes the icon on a worker thread. Must be called on the main thread. The callback is not
+     * called if the icon could not be decoded, if a later load of the same key was started, or if
+     * the loader was shut down in the meantime.
+     *
+     * @param key      unique key of the icon in {@link IconCache}
+     * @param source   encoded icon
+     * @param size     size in pixels of the square the icon is drawn in
+     * @param callback receives the result on the main thread
+     */
+    public void load(@NonNull final String key, @NonNull final Source source, final int size,
+                     @NonNull final Callback callback) {
+        if (mShutdown) return;
+        final int sequence = ++mLoadSequence;
+        mLatestLoads.put(key, sequence);
+        try {
+            mWorkers.execute(new Runnable() {
+                @Override
+                public void run() {
+                    final Result result = decode(key, source, size);
+                    if (mShutdown) return;
+                    mMainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            final Integer latest = mLatestLoads.get(key);
+                            if (latest == null || latest != sequence) {
+                                BLog.d("Dropped superseded icon of %s", key);
+                                return;
+                            }
+                            mLatestLoads.remove(key);
+                            if (result != null && !mShutdown) callback.onIconLoaded(result);
+                        }
+                    });
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            mLatestLoads.remove(key);
+            BLog.e("Icon load rejected for %s", key);
+        }
+    }
+
+    /**
+     * Stops the workers. Pending loads are dropped and no callback is called afterwards.
+     */
+    public void shutdown() {
+        mShutdown = true;
+        mWorkers.shutdownNow();
+    }
+
+    @Nullable
+    private static Result decode(@NonNull String key, @NonNull Source source, int size) {
+        final IconCache cache = IconCache.get();
+        Bitmap icon = cache.peek(key, size);
+        if (icon == null) {
+            try {
+                final BitmapFactory.Options options = new BitmapFactory.Options();
+                options.inJustDecodeBounds = true;
+                source.decode(options);
+                if (options.outWidth <= 0 || options.outHeight <= 0) return null;
+                options.inSampleSize = calculateInSampleSize(options.outWidth, options.outHeight, size);
+                options.inJustDecodeBounds = false;
+                final Bitmap decoded = source.decode(options);
+                if (decoded == null) return null;
+                icon = cache.obtain(key, decoded, size);
+            } catch (IOException | RuntimeException e) {
+                BLog.e("Error while decoding icon %s: %s", key, e.getMessage());
+                return null;
+            }
+        }
+        final int[] pixels = new int[icon.getWidth() * icon.getHeight()];
+        icon.getPixels(pixels, 0, icon.getWidth(), 0, 0, icon.getWidth(), icon.getHeight());
+        if (!hasOpaquePixel(pixels)) return new Result(key, icon, false, Color.TRANSPARENT, Color.WHITE);
+        final int color = dominantColor(pixels);
+        return new Result(key, icon, true, color, ColourUtils.getForegroundWhiteOrBlack(color));
+    }
+
+    /**
+     * @return largest power of two that keeps both sides of the decoded image at least the size
+     */
+    static int calculateInSampleSize(int width, int height, int size) {
+        int sampleSize = 1;
+        while (width / (sampleSize * 2) >= size && height / (sampleSize * 2) >= size) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    static boolean hasOpaquePixel(@NonNull int[] pixels) {
+        for (int pixel : pixels) {
+            if (isOpaque(pixel)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Finds the color covering most of an icon. Opaque pixels are grouped into buckets of similar
+     * colors and the pixels of the largest bucket are averaged, so a logo on a white background gives
+     * white rather than a blend of both. Icons are already downsampled, so every pixel is read.
+     *
+     * @return dominant color, black if no pixel is opaque
+     */
+    @ColorInt
+    static int dominantColor(@NonNull int[] pixels) {
+        final int[] counts = new int[1 << (3 * BUCKET_BITS)];
+        int best = -1;
+        int bestCount = 0;
+        for (int pixel : pixels) {
+            if (!isOpaque(pixel)) continue;
+            final int bucket = bucketOf(pixel);
+            // Ties go to the bucket that got there first
+            if (++counts[bucket] > bestCount) {
+                best = bucket;
+                bestCount = counts[bucket];
+            }
+        }
+        if (best < 0) return Color.BLACK;
+        long red = 0, green = 0, blue = 0;
+        for (int pixel : pixels) {
+            if (!isOpaque(pixel) || bucketOf(pixel) != best) continue;
+            red += (pixel >> 16) & 0xff;
+            green += (pixel >> 8) & 0xff;
+            blue += pixel & 0xff;
+        }
+        return 0xff000000 | (int) (red / bestCount) << 16 | (int) (green / bestCount) << 8
+                | (int) (blue / bestCount);
+    }
+
+    private static boolean isOpaque(int pixel) {
+        return pixel >>> 24 >= MIN_COLOR_ALPHA;
+    }
+
+    private static int bucketOf(int pixel) {
+        final int shift = 8 - BUCKET_BITS;
+        final int red = ((pixel >> 16) & 0xff) >> shift;
+        final int green = ((pixel >> 8) & 0xff) >> shift;
+        final int blue = (pixel & 0xff) >> shift;
+        return (red << (2 * BUCKET_BITS)) | (green << BUCKET_BITS) | blue;
+    }
+}
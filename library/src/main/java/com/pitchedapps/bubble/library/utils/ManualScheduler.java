@@ -0,0 +1,74 @@
+package com.pitchedapps.bubble.library.utils;
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+
+/**
+ * {@link Scheduler} with a clock that only moves when {@link #advanceBy(long)} is called, for
+ * running delayed bubble behavior deterministically in tests.
+ */
+public class ManualScheduler implements Scheduler {
+
+    private static class ScheduledTask {
+        final Runnable task;
+        final long time;
+
+        ScheduledTask(Runnable task, long time) {
+            this.task = task;
+            this.time = time;
+        }
+    }
+
+    // Pending tasks in the order they were scheduled
+    private final ArrayList<ScheduledTask> mPending = new ArrayList<>();
+    private long mNow;
+
+    @Override
+    public void schedule(@NonNull Runnable task, long delayMillis) {
+        cancel(task);
+        mPending.add(new ScheduledTask(task, mNow + delayMillis));
+    }
+
+    @Override
+    public void cancel(@NonNull Runnable task) {
+        for (int i = mPending.size() - 1; i >= 0; i--) {
+            if (mPending.get(i).task == task) mPending.remove(i);
+        }
+    }
+
+    @Override
+    public long now() {
+        return mNow;
+    }
+
+    /**
+     * Moves the clock forward, running every task that becomes due in order of its due time. Tasks
+     * due at the same time run in the order they were scheduled, and tasks scheduled while advancing
+     * run as well if they become due before the new time.
+     *
+     * @param millis time to advance by
+     */
+    public void advanceBy(long millis) {
+        final long target = mNow + millis;
+        while (true) {
+            int next = -1;
+            for (int i = 0; i < mPending.size(); i++) {
+                final long time = mPending.get(i).time;
+                if (time <= target && (next < 0 || time < mPending.get(next).time)) next = i;
+            }
+            if (next < 0) break;
+            final ScheduledTask due = mPending.remove(next);
+            mNow = due.time;
+            due.task.run();
+        }
+        mNow = target;
+    }
+
+    /**
+     * @return number of tasks waiting to run
+     */
+    public int getPendingCount() {
+        return mPending.size();
+    }
+}
@@ -0,0 +1,30 @@
+package com.pitchedapps.bubble.library.utils;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Runs delayed work on the thread driving the bubbles. The task itself is the cancellation token,
+ * so callers keep one preallocated {@link Runnable} per behavior and reschedule it as needed.
+ */
+public interface Scheduler {
+
+    /**
+     * Runs the task after the given delay, replacing any pending run of the same task.
+     *
+     * @param task        task to run
+     * @param delayMillis delay in milliseconds
+     */
+    void schedule(@NonNull Runnable task, long delayMillis);
+
+    /**
+     * Removes any pending run of the task. No op if it is not scheduled.
+     *
+     * @param task task to cancel
+     */
+    void cancel(@NonNull Runnable task);
+
+    /**
+     * @return current time of this scheduler in milliseconds
+     */
+    long now();
+}
@@ -0,0 +1,137 @@
+package com.pitchedapps.bubble.library.physics;
+
+import com.facebook.rebound.BaseSpringSystem;
+import com.facebook.rebound.Spring;
+import com.facebook.rebound.SpringConfig;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares {@link AnalyticSpring} with a rebound {@link Spring} integrating the same motion on a
+ * {@link ManualSpringLooper}.
+ * <p>
+ * Rebound integrates in fixed 1 ms steps and interpolates the last partial step, which trails the
+ * exact solution by up to a millisecond, so each frame is compared with the closed-form position at
+ * the frame time and a millisecond before, whichever is closer.
+ */
+public class AnalyticSpringTest {
+
+    private static final int FRAME_MILLIS = 16;
+    private static final int MAX_FRAMES = 1000;
+    private static final int CHAIN_LINKS = 7;
+    private static final double MAX_ERROR = 0.01;
+
+    /**
+     * Releases both springs from the same state and steps them until both are at rest.
+     *
+     * @return frame on which the numeric spring came to rest minus the one of the analytic spring
+     */
+    private static int compare(SpringConfig config, double start, double velocity, double end) {
+        final ManualSpringLooper looper = new ManualSpringLooper();
+        final Spring numeric = new BaseSpringSystem(looper).createSpring().setSpringConfig(config);
+        numeric.setCurrentValue(start);
+        numeric.setVelocity(velocity);
+        numeric.setEndValue(end);
+        final AnalyticSpring analytic = new AnalyticSpring(config);
+        analytic.setState(start, velocity, end, 0);
+        assertFalse(analytic.isAtRest(0));
+
+        long now = 0;
+        int numericRest = -1, analyticRest = -1;
+        for (int frame = 1; frame < MAX_FRAMES && (numericRest < 0 || analyticRest < 0); frame++) {
+            looper.advance(FRAME_MILLIS);
+            now += FRAME_MILLIS;
+            final double position = numeric.getCurrentValue();
+            final double error = Math.min(Math.abs(position - analytic.getPosition(now)),
+                    Math.abs(position - analytic.getPosition(now - 1)));
+            assertTrue("Frame " + frame + " off by " + error, error <= MAX_ERROR);
+            if (numericRest < 0 && numeric.isAtRest()) numericRest = frame;
+            if (analyticRest < 0 && analytic.isAtRest(now)) analyticRest = frame;
+        }
+        assertTrue("Numeric spring never rested", numericRest > 0);
+        assertTrue("Analytic spring never rested", analyticRest > 0);
+        assertEquals(numeric.getCurrentValue(), analytic.getPosition(now), MAX_ERROR);
+        return numericRest - analyticRest;
+    }
+
+    private static void assertRestsWithinFrame(int restFrameDifference) {
+        assertTrue("Rest frames differ by " + restFrameDifference, Math.abs(restFrameDifference) <= 1);
+    }
+
+    @Test
+    public void defaultChainLinks() {
+        // The shared array may be longer than requested
+        final SpringConfig[] configs = SpringConfigs.chain(CHAIN_LINKS, SpringConfigs.DEFAULT_CHAIN_CURVE);
+        for (int position = 0; position < CHAIN_LINKS; position++) {
+            assertRestsWithinFrame(compare(configs[position], 0, 1500, 500));
+        }
+    }
+
+    @Test
+    public void underdamped() {
+        assertRestsWithinFrame(compare(SpringConfig.fromOrigamiTensionAndFriction(40, 7), 0, 1500, 500));
+        assertRestsWithinFrame(compare(SpringConfig.fromOrigamiTensionAndFriction(40, 7), 800, 0, 100));
+    }
+
+    @Test
+    public void criticallyDamped() {
+        // Friction is twice the square root of the tension
+        assertRestsWithinFrame(compare(new SpringConfig(100, 20), 0, 1500, 500));
+        assertRestsWithinFrame(compare(new SpringConfig(100, 20), 500, -3000, 0));
+    }
+
+    @Test
+    public void overdamped() {
+        assertRestsWithinFrame(compare(new SpringConfig(50, 40), 0, 1500, 500));
+        assertRestsWithinFrame(compare(new SpringConfig(50, 40), 500, 0, -200));
+    }
+
+    @Test
+    public void zeroTension() {
+        // Friction alone slows a flung bubble down, wherever it ends up
+        assertRestsWithinFrame(compare(SpringConfigs.DRAG, 0, 1500, 0));
+        assertRestsWithinFrame(compare(new SpringConfig(0, 6.4), 300, -2500, 300));
+    }
+
+    @Test
+    public void zeroTensionRestsWhereItStops() {
+        final AnalyticSpring spring = new AnalyticSpring(new SpringConfig(0, 6.4));
+        spring.setState(0, 640, 0, 0);
+        // Travels velocity / friction in total
+        long now = 0;
+        while (!spring.isAtRest(now)) now += FRAME_MILLIS;
+        assertEquals(100, spring.getPosition(now), 0.01);
+        assertEquals(spring.getPosition(now), spring.getEndValue(), 0);
+        assertEquals(0, spring.getVelocity(now), 0);
+    }
+
+    @Test
+    public void retargetKeepsPositionAndVelocity() {
+        final AnalyticSpring spring = new AnalyticSpring(new SpringConfig(230, 22));
+        spring.setState(0, 0, 500, 0);
+        final double position = spring.getPosition(100);
+        final double velocity = spring.getVelocity(100);
+        assertTrue(spring.setEndValue(-500, 100));
+        assertFalse(spring.setEndValue(-500, 100));
+        assertEquals(position, spring.getPosition(100), 1e-9);
+        assertEquals(velocity, spring.getVelocity(100), 1e-9);
+        spring.setSpringConfig(new SpringConfig(50, 40), 100);
+        assertEquals(position, spring.getPosition(100), 1e-9);
+        assertEquals(velocity, spring.getVelocity(100), 1e-9);
+    }
+
+    @Test
+    public void setAtRestStopsInPlace() {
+        final AnalyticSpring spring = new AnalyticSpring(new SpringConfig(230, 22));
+        spring.setState(0, 0, 500, 0);
+        final double position = spring.getPosition(50);
+        spring.setAtRest(50);
+        assertTrue(spring.isAtRest(50));
+        assertEquals(position, spring.getPosition(1000), 0);
+        assertEquals(position, spring.getEndValue(), 0);
+    }
+}
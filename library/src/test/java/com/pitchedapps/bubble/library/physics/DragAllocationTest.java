@@ -0,0 +1,191 @@
+package com.pitchedapps.bubble.library.physics;
+
+import com.facebook.rebound.BaseSpringSystem;
+import com.facebook.rebound.SimpleSpringListener;
+import com.facebook.rebound.Spring;
+import com.facebook.rebound.SpringConfig;
+import com.facebook.rebound.SpringListener;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Iterator;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the physics of a move event of the master, {@link BubbleMotion#handleMove} as called by
+ * {@code Bubble.handleMove}, and counts the bytes the thread allocates once the path is warmed up.
+ * <p>
+ * Rebound notifies the listeners of a spring through a new iterator on every write, which the library
+ * cannot avoid. The tests therefore count listener notifications and expect nothing beyond the cost of
+ * those iterators, and nothing for move events that do not move the bubble. A few bytes are allowed
+ * for whatever the VM itself allocates on the thread, such as while compiling.
+ */
+public class DragAllocationTest {
+
+    private static final int WARM_UP_EVENTS = 50000;
+    private static final int MEASURED_EVENTS = 10000;
+    private static final int TOUCH_SLOP_SQUARE = 24 * 24;
+    private static final int DOWN_X = 500;
+    private static final int DOWN_Y = 500;
+    private static final int HALF_SIZE = 84;
+    // Allowed for the whole measured run, far below a single allocation per event
+    private static final long MAX_STRAY_BYTES = 1024;
+
+    private com.sun.management.ThreadMXBean mThreads;
+    private MovementTracker mTracker;
+    private BubbleMotion mMotion;
+    private DropTargetIndex mDropTargets;
+    private final NotificationCounter mNotifications = new NotificationCounter();
+    private long mEventTime;
+    private Iterator<SpringListener> mIterator;
+    private int mLocks;
+
+    // Same placement as the master: centred on the target
+    private final BubbleMotion.DropTargetHandler mHandler = new BubbleMotion.DropTargetHandler() {
+        @Override
+        public void onDragOver(DropTarget target) {
+            if (target != null) mLocks++;
+        }
+
+        @Override
+        public int getLockX(DropTarget target) {
+            return target.getCenterX() - HALF_SIZE;
+        }
+
+        @Override
+        public int getLockY(DropTarget target) {
+            return target.getCenterY() - HALF_SIZE;
+        }
+    };
+
+    private static class NotificationCounter extends SimpleSpringListener {
+        long mCount;
+
+        @Override
+        public void onSpringUpdate(Spring spring) {
+            mCount++;
+        }
+
+        @Override
+        public void onSpringEndStateChange(Spring spring) {
+            mCount++;
+        }
+    }
+
+    @Before
+    public void setUp() {
+        final java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        mThreads = (com.sun.management.ThreadMXBean) threads;
+        Assume.assumeTrue(mThreads.isThreadAllocatedMemorySupported());
+        mThreads.setThreadAllocatedMemoryEnabled(true);
+
+        final BaseSpringSystem springSystem = new BaseSpringSystem(new ManualSpringLooper());
+        mTracker = MovementTracker.obtain();
+        mMotion = new BubbleMotion(
+                springSystem.createSpring().addListener(mNotifications),
+                springSystem.createSpring().addListener(mNotifications));
+        mMotion.setBounds(new ScreenBounds(1080, 1920, 168, 75));
+        mMotion.setPosition(DOWN_X, DOWN_Y);
+        mDropTargets = new DropTargetIndex(1080, 1920, 360);
+        mDropTargets.add(new DropTarget(-1, 540, 1600, 360, SpringConfigs.SNAP, null));
+        mDropTargets.add(new DropTarget(1, 100, 300, 200, new SpringConfig(200, 20), null));
+        mTracker.onDown();
+        mMotion.touchDown();
+    }
+
+    /**
+     * Same calls as a move event of the master: track the pointer, then move the bubble.
+     */
+    private void move(float offsetX, float offsetY) {
+        mEventTime += 8;
+        mTracker.addMovement(DOWN_X + offsetX, DOWN_Y + offsetY, mEventTime);
+        mMotion.handleMove(offsetX, offsetY, TOUCH_SLOP_SQUARE, mDropTargets, HALF_SIZE, mHandler);
+    }
+
+    /**
+     * Pointer sweeping the screen, crossing both targets.
+     */
+    private void sweep(int event) {
+        move((event * 7) % 900 - 400, (event * 13) % 1700 - 400);
+    }
+
+    private long allocatedBytes() {
+        return mThreads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * @return size of the iterator rebound allocates to notify the listeners of a spring, which the
+     * VM may also optimize away
+     */
+    private double notificationCost() {
+        final CopyOnWriteArraySet<SpringListener> listeners = new CopyOnWriteArraySet<>();
+        listeners.add(new SimpleSpringListener());
+        final long before = allocatedBytes();
+        for (int i = 0; i < MEASURED_EVENTS; i++) {
+            // Escapes, so every iterator is really allocated
+            mIterator = listeners.iterator();
+        }
+        return (allocatedBytes() - before) / (double) MEASURED_EVENTS;
+    }
+
+    @Test
+    public void sweepAllocatesOnlyInRebound() {
+        final double notificationCost = notificationCost();
+        for (int event = 0; event < WARM_UP_EVENTS; event++) {
+            sweep(event);
+        }
+        final long notificationsBefore = mNotifications.mCount;
+        final long before = allocatedBytes();
+        for (int event = 0; event < MEASURED_EVENTS; event++) {
+            sweep(WARM_UP_EVENTS + event);
+        }
+        final long allocated = allocatedBytes() - before;
+        final long notifications = mNotifications.mCount - notificationsBefore;
+
+        assertTrue("Target never hit", mLocks > 0);
+        assertTrue("Allocated " + allocated + " bytes for " + notifications + " notifications of "
+                        + notificationCost + " bytes",
+                allocated <= notifications * notificationCost + MAX_STRAY_BYTES);
+    }
+
+    @Test
+    public void movesOverTargetDoNotAllocate() {
+        // Jitter around the centre of the remove target, where every event locks onto it again
+        for (int event = 0; event < WARM_UP_EVENTS; event++) {
+            move(40 + event % 5, 1100 + event % 3);
+        }
+        mNotifications.mCount = 0;
+        final long before = allocatedBytes();
+        for (int event = 0; event < MEASURED_EVENTS; event++) {
+            move(40 + event % 5, 1100 + event % 3);
+        }
+        final long allocated = allocatedBytes() - before;
+
+        assertTrue(mMotion.isLocked());
+        assertEquals(0, mNotifications.mCount);
+        assertTrue("Allocated " + allocated + " bytes for " + MEASURED_EVENTS + " move events",
+                allocated <= MAX_STRAY_BYTES);
+    }
+
+    @Test
+    public void stillPointerDoesNotAllocate() {
+        for (int event = 0; event < WARM_UP_EVENTS; event++) {
+            move(200, 200);
+        }
+        final long before = allocatedBytes();
+        for (int event = 0; event < MEASURED_EVENTS; event++) {
+            move(200, 200);
+        }
+        final long allocated = allocatedBytes() - before;
+
+        assertTrue("Allocated " + allocated + " bytes for " + MEASURED_EVENTS + " move events",
+                allocated <= MAX_STRAY_BYTES);
+    }
+}
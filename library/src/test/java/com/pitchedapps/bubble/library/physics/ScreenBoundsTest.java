@@ -0,0 +1,120 @@
+package com.pitchedapps.bubble.library.physics;
+
+import com.facebook.rebound.BaseSpringSystem;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ScreenBoundsTest {
+
+    private static final int BUBBLE_WIDTH = 168;
+    private static final ScreenBounds PORTRAIT = new ScreenBounds(1080, 1920, BUBBLE_WIDTH, 75);
+    private static final ScreenBounds LANDSCAPE = PORTRAIT.resize(1920, 1080);
+
+    @Test
+    public void resizeKeepsBubbleAndInset() {
+        assertEquals(1920, LANDSCAPE.dispWidth);
+        assertEquals(1080, LANDSCAPE.dispHeight);
+        assertEquals(PORTRAIT.left, LANDSCAPE.left);
+        assertEquals(PORTRAIT.top, LANDSCAPE.top);
+        assertEquals(1920 - (PORTRAIT.dispWidth - PORTRAIT.right), LANDSCAPE.right);
+        assertEquals((int) (1080 * 0.85), LANDSCAPE.bottom);
+    }
+
+    @Test
+    public void wallsStayOnWalls() {
+        assertEquals(LANDSCAPE.left, LANDSCAPE.remapX(PORTRAIT, PORTRAIT.left));
+        assertEquals(LANDSCAPE.right, LANDSCAPE.remapX(PORTRAIT, PORTRAIT.right));
+        assertEquals(LANDSCAPE.top, LANDSCAPE.remapY(PORTRAIT, PORTRAIT.top));
+        assertEquals(LANDSCAPE.bottom, LANDSCAPE.remapY(PORTRAIT, PORTRAIT.bottom));
+    }
+
+    @Test
+    public void pastWallsAreClamped() {
+        assertEquals(LANDSCAPE.left, LANDSCAPE.remapX(PORTRAIT, PORTRAIT.left - 300));
+        assertEquals(LANDSCAPE.right, LANDSCAPE.remapX(PORTRAIT, PORTRAIT.dispWidth + 10));
+        assertEquals(LANDSCAPE.top, LANDSCAPE.remapY(PORTRAIT, 0));
+        assertEquals(LANDSCAPE.bottom, LANDSCAPE.remapY(PORTRAIT, PORTRAIT.dispHeight));
+    }
+
+    @Test
+    public void relativePositionIsKept() {
+        final int middleX = (PORTRAIT.left + PORTRAIT.right) / 2;
+        final int middleY = (PORTRAIT.top + PORTRAIT.bottom) / 2;
+        assertEquals((LANDSCAPE.left + LANDSCAPE.right) / 2, LANDSCAPE.remapX(PORTRAIT, middleX), 1);
+        assertEquals((LANDSCAPE.top + LANDSCAPE.bottom) / 2, LANDSCAPE.remapY(PORTRAIT, middleY), 1);
+
+        final int quarterY = PORTRAIT.top + (PORTRAIT.bottom - PORTRAIT.top) / 4;
+        assertEquals(LANDSCAPE.top + (LANDSCAPE.bottom - LANDSCAPE.top) / 4,
+                LANDSCAPE.remapY(PORTRAIT, quarterY), 1);
+    }
+
+    @Test
+    public void remapIsMonotonic() {
+        int previous = Integer.MIN_VALUE;
+        for (int x = PORTRAIT.left; x <= PORTRAIT.right; x++) {
+            final int remapped = LANDSCAPE.remapX(PORTRAIT, x);
+            assertTrue(remapped >= previous);
+            previous = remapped;
+        }
+        previous = Integer.MIN_VALUE;
+        for (int y = LANDSCAPE.top; y <= LANDSCAPE.bottom; y++) {
+            final int remapped = PORTRAIT.remapY(LANDSCAPE, y);
+            assertTrue(remapped >= previous);
+            previous = remapped;
+        }
+    }
+
+    @Test
+    public void rotatingBackRestoresPosition() {
+        for (int x = PORTRAIT.left; x <= PORTRAIT.right; x += 37) {
+            assertEquals(x, PORTRAIT.remapX(LANDSCAPE, LANDSCAPE.remapX(PORTRAIT, x)), 1);
+        }
+        // Landscape is shorter, so a portrait y comes back within the size of a landscape step
+        final double step = (PORTRAIT.bottom - PORTRAIT.top) / (double) (LANDSCAPE.bottom - LANDSCAPE.top);
+        for (int y = PORTRAIT.top; y <= PORTRAIT.bottom; y += 41) {
+            assertEquals(y, PORTRAIT.remapY(LANDSCAPE, LANDSCAPE.remapY(PORTRAIT, y)), step);
+        }
+    }
+
+    @Test
+    public void sameBoundsAreIdentity() {
+        for (int x = PORTRAIT.left; x <= PORTRAIT.right; x += 13) {
+            assertEquals(x, PORTRAIT.remapX(PORTRAIT, x));
+        }
+        for (int y = PORTRAIT.top; y <= PORTRAIT.bottom; y += 13) {
+            assertEquals(y, PORTRAIT.remapY(PORTRAIT, y));
+        }
+    }
+
+    @Test
+    public void remappedBubbleSettlesWithoutBoundCorrections() {
+        final int[][] positions = {{PORTRAIT.right, 900}, {PORTRAIT.left, 300}, {500, 1500},
+                {PORTRAIT.right, PORTRAIT.bottom}};
+        for (int[] position : positions) {
+            final ManualSpringLooper looper = new ManualSpringLooper();
+            final BaseSpringSystem springSystem = new BaseSpringSystem(looper);
+            final BubbleMotion motion = new BubbleMotion(springSystem.createSpring(), springSystem.createSpring());
+            motion.setBounds(PORTRAIT);
+            motion.setPosition(position[0], position[1]);
+            motion.remap(LANDSCAPE, BUBBLE_WIDTH);
+            final double endX = motion.getXSpring().getEndValue();
+            final double endY = motion.getYSpring().getEndValue();
+            assertEquals(LANDSCAPE.remapX(PORTRAIT, position[0]), endX, 0);
+            assertEquals(LANDSCAPE.remapY(PORTRAIT, position[1]), endY, 0);
+
+            for (int frame = 0; frame < 1000 && looper.advance(16); frame++) {
+                motion.checkBounds(BUBBLE_WIDTH);
+                // The path from the old position is not pulled back to the new walls
+                assertEquals(endX, motion.getXSpring().getEndValue(), 0);
+                assertEquals(endY, motion.getYSpring().getEndValue(), 0);
+            }
+            assertFalse(looper.isRunning());
+            assertEquals(endX, motion.getX(), 1);
+            assertEquals(endY, motion.getY(), 1);
+        }
+    }
+}
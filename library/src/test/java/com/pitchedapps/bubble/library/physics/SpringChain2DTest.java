@@ -0,0 +1,102 @@
+package com.pitchedapps.bubble.library.physics;
+
+import com.facebook.rebound.BaseSpringSystem;
+import com.facebook.rebound.Spring;
+import com.facebook.rebound.SpringSystemListener;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Drives a numeric chain and an analytic chain with the same master motion and checks that the
+ * slaves move the same way and the spring systems go idle on the same frame.
+ */
+public class SpringChain2DTest {
+
+    private static final int FRAME_MILLIS = 16;
+    private static final int MAX_FRAMES = 5000;
+    // Slaves trail the exact solution by up to the 1 ms rebound integration step of each link
+    private static final double MAX_ERROR = 1;
+    // Frames of the drag, after which the master jumps and stays still
+    private static final int DRAG_FRAMES = 60;
+
+    private long mNow;
+
+    private static final class Chain {
+        final ManualSpringLooper looper = new ManualSpringLooper();
+        final BaseSpringSystem springSystem = new BaseSpringSystem(looper);
+        final SpringChain2D chain;
+        final Spring[] xSprings;
+        final Spring[] ySprings;
+
+        Chain(SpringChain2D chain, int slaves) {
+            this.chain = chain;
+            xSprings = new Spring[slaves];
+            ySprings = new Spring[slaves];
+            for (int i = 0; i < slaves; i++) {
+                xSprings[i] = springSystem.createSpring().setCurrentValue(100);
+                ySprings[i] = springSystem.createSpring().setCurrentValue(500);
+                assertTrue(chain.addSlaveSprings(xSprings[i], ySprings[i]));
+            }
+        }
+    }
+
+    private void compareChains(int slaves) {
+        mNow = 0;
+        final Chain numeric = new Chain(SpringChain2D.create(1080, 3f, slaves), slaves);
+        final Chain analytic = new Chain(SpringChain2D.createAnalytic(1080, 3f, slaves,
+                SpringConfigs.DEFAULT_CHAIN_CURVE, new SpringIdleTracker.Clock() {
+                    @Override
+                    public long now() {
+                        return mNow;
+                    }
+                }), slaves);
+        assertTrue(analytic.chain.isAnalytic());
+        analytic.springSystem.addListener(new SpringSystemListener() {
+            @Override
+            public void onBeforeIntegrate(BaseSpringSystem springSystem) {
+            }
+
+            @Override
+            public void onAfterIntegrate(BaseSpringSystem springSystem) {
+                analytic.chain.updateFollowers();
+            }
+        });
+
+        int numericIdle = -1, analyticIdle = -1;
+        for (int frame = 0; frame < MAX_FRAMES && (numericIdle < 0 || analyticIdle < 0); frame++) {
+            // A wavy drag across the screen, then a jump to the other side
+            final int masterX = frame < DRAG_FRAMES ? 100 + frame * 10 : 980;
+            final int masterY = frame < DRAG_FRAMES ? 500 + (int) (200 * Math.sin(frame / 10.0)) : 1200;
+            numeric.chain.performGroupMove(masterX, masterY);
+            analytic.chain.performGroupMove(masterX, masterY);
+            numeric.looper.advance(FRAME_MILLIS);
+            mNow += FRAME_MILLIS;
+            analytic.looper.advance(FRAME_MILLIS);
+            for (int i = 0; i < slaves; i++) {
+                assertEquals("Slave " + i + " x on frame " + frame, numeric.xSprings[i].getCurrentValue(),
+                        analytic.xSprings[i].getCurrentValue(), MAX_ERROR);
+                assertEquals("Slave " + i + " y on frame " + frame, numeric.ySprings[i].getCurrentValue(),
+                        analytic.ySprings[i].getCurrentValue(), MAX_ERROR);
+            }
+            if (frame > DRAG_FRAMES) {
+                if (numericIdle < 0 && !numeric.looper.isRunning()) numericIdle = frame;
+                if (analyticIdle < 0 && !analytic.looper.isRunning()) analyticIdle = frame;
+            }
+        }
+        assertTrue("Numeric chain never went idle", numericIdle > 0);
+        assertEquals("Idle frame", numericIdle, analyticIdle);
+    }
+
+    @Test
+    public void sixSlavesGoIdleOnSameFrame() {
+        compareChains(6);
+    }
+
+    @Test
+    public void fiftySlavesGoIdleOnSameFrame() {
+        compareChains(50);
+    }
+}
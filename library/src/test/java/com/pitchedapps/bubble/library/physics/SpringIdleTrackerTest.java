@@ -0,0 +1,151 @@
+package com.pitchedapps.bubble.library.physics;
+
+import com.facebook.rebound.BaseSpringSystem;
+import com.facebook.rebound.Spring;
+import com.pitchedapps.bubble.library.utils.ManualScheduler;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SpringIdleTrackerTest {
+
+    private static final int FRAME_MILLIS = 16;
+
+    private final ManualScheduler mScheduler = new ManualScheduler();
+    private final ManualSpringLooper mLooper = new ManualSpringLooper();
+    // Transitions with the scheduler time they happened at, "A" for active and "I" for idle
+    private final List<String> mTransitions = new ArrayList<>();
+    private SpringIdleTracker mTracker;
+    private Spring mSpring;
+
+    @Before
+    public void setUp() {
+        final BaseSpringSystem springSystem = new BaseSpringSystem(mLooper);
+        mTracker = new SpringIdleTracker(new SpringIdleTracker.Clock() {
+            @Override
+            public long now() {
+                return mScheduler.now();
+            }
+        }, new SpringIdleTracker.Listener() {
+            @Override
+            public void onSpringsActive() {
+                mTransitions.add("A@" + mScheduler.now());
+            }
+
+            @Override
+            public void onSpringsIdle() {
+                mTransitions.add("I@" + mScheduler.now());
+            }
+        });
+        springSystem.addListener(mTracker);
+        mSpring = springSystem.createSpring().setSpringConfig(SpringConfigs.FLING);
+    }
+
+    /**
+     * Loops the spring system once per frame on the scheduler clock until it parks itself.
+     *
+     * @return number of frames looped
+     */
+    private int runUntilIdle() {
+        int frames = 0;
+        while (mLooper.isRunning()) {
+            mScheduler.advanceBy(FRAME_MILLIS);
+            mLooper.advance(FRAME_MILLIS);
+            frames++;
+        }
+        return frames;
+    }
+
+    @Test
+    public void startsIdle() {
+        assertFalse(mTracker.isActive());
+        assertEquals(0, mTracker.getActiveMillis());
+        assertEquals(0, mTracker.getActivationCount());
+    }
+
+    @Test
+    public void reportsActiveOnFirstFrameAndIdleAfterLast() {
+        mScheduler.advanceBy(1000);
+        mSpring.setEndValue(100);
+        // Moving a spring only starts the looper, the first frame reports the transition
+        assertTrue(mLooper.isRunning());
+        assertEquals(0, mTransitions.size());
+
+        final int frames = runUntilIdle();
+        final long idleAt = 1000 + frames * FRAME_MILLIS;
+        assertEquals(Arrays.asList("A@" + (1000 + FRAME_MILLIS), "I@" + idleAt), mTransitions);
+        assertFalse(mTracker.isActive());
+        assertEquals(frames, mTracker.getFrameCount());
+        assertEquals((frames - 1) * FRAME_MILLIS, mTracker.getActiveMillis());
+    }
+
+    @Test
+    public void activeTimeAccumulatesOverPeriods() {
+        mSpring.setEndValue(100);
+        final int first = runUntilIdle();
+        final long firstMillis = mTracker.getActiveMillis();
+        assertEquals((first - 1) * FRAME_MILLIS, firstMillis);
+
+        // Idle time is not counted
+        mScheduler.advanceBy(5000);
+        assertEquals(firstMillis, mTracker.getActiveMillis());
+
+        mSpring.setEndValue(0);
+        final int second = runUntilIdle();
+        assertEquals((first + second - 2) * FRAME_MILLIS, mTracker.getActiveMillis());
+        assertEquals(2, mTracker.getActivationCount());
+        assertEquals(first + second, mTracker.getFrameCount());
+        assertEquals(4, mTransitions.size());
+    }
+
+    @Test
+    public void activeTimeIncludesCurrentPeriod() {
+        mSpring.setEndValue(100);
+        for (int i = 0; i < 5; i++) {
+            mScheduler.advanceBy(FRAME_MILLIS);
+            mLooper.advance(FRAME_MILLIS);
+        }
+        assertTrue(mTracker.isActive());
+        assertEquals(4 * FRAME_MILLIS, mTracker.getActiveMillis());
+        mScheduler.advanceBy(7);
+        assertEquals(4 * FRAME_MILLIS + 7, mTracker.getActiveMillis());
+    }
+
+    @Test
+    public void retargetWhileActiveKeepsSinglePeriod() {
+        mSpring.setEndValue(100);
+        for (int i = 0; i < 5; i++) {
+            mScheduler.advanceBy(FRAME_MILLIS);
+            mLooper.advance(FRAME_MILLIS);
+        }
+        mSpring.setEndValue(-100);
+        runUntilIdle();
+        assertEquals(1, mTracker.getActivationCount());
+        assertEquals(2, mTransitions.size());
+    }
+
+    @Test
+    public void resetCountersRestartsCurrentPeriod() {
+        mSpring.setEndValue(100);
+        for (int i = 0; i < 3; i++) {
+            mScheduler.advanceBy(FRAME_MILLIS);
+            mLooper.advance(FRAME_MILLIS);
+        }
+        mTracker.resetCounters();
+        assertEquals(0, mTracker.getActiveMillis());
+        assertEquals(0, mTracker.getActivationCount());
+        assertEquals(0, mTracker.getFrameCount());
+
+        final int frames = runUntilIdle();
+        assertEquals(frames * FRAME_MILLIS, mTracker.getActiveMillis());
+        assertEquals(frames, mTracker.getFrameCount());
+    }
+}
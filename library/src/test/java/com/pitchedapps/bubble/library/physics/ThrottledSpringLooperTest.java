@@ -0,0 +1,183 @@
+package com.pitchedapps.bubble.library.physics;
+
+import com.facebook.rebound.BaseSpringSystem;
+import com.facebook.rebound.Spring;
+import com.facebook.rebound.SpringConfig;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the same fling on displays of 60, 90, 120 and 144 Hz, with and without a 30 Hz cap, and
+ * checks that the spring moves along the same curve at every rate. The exact solution of
+ * {@link AnalyticSpring} serves as the common reference the runs are compared through.
+ */
+public class ThrottledSpringLooperTest {
+
+    private static final double[] DISPLAY_RATES = {60, 90, 120, 144};
+    private static final int CAPPED_RATE = 30;
+    private static final double START_VELOCITY = 2000;
+    private static final double END_VALUE = 600;
+    // Rebound trails the frame time by up to one 1 ms integration step
+    private static final double MAX_ERROR = 0.01;
+    // Same as the tolerance of the looper
+    private static final double FRAME_TOLERANCE_MILLIS = 4;
+    private static final int MAX_FRAMES = 100000;
+
+    private long mNow;
+
+    private final SpringIdleTracker.Clock mClock = new SpringIdleTracker.Clock() {
+        @Override
+        public long now() {
+            return mNow;
+        }
+    };
+
+    /**
+     * Looper whose display frames are delivered by the test.
+     */
+    private static final class FakeLooper extends ThrottledSpringLooper {
+        boolean mFramePosted;
+
+        FakeLooper(SpringIdleTracker.Clock clock) {
+            super(clock);
+        }
+
+        @Override
+        protected void postFrame() {
+            mFramePosted = true;
+        }
+
+        @Override
+        protected void cancelFrame() {
+            mFramePosted = false;
+        }
+
+        void frame(long frameTimeMillis) {
+            if (!mFramePosted) return;
+            mFramePosted = false;
+            doFrame(frameTimeMillis);
+        }
+    }
+
+    /**
+     * Outcome of a fling run at one display rate.
+     */
+    private static final class Run {
+        double maxError;
+        long restTime = -1;
+        long loops;
+        long skippedFrames;
+        double finalValue;
+        // Shortest time between two loops of the spring system
+        long minLoopInterval = Long.MAX_VALUE;
+    }
+
+    private Run fling(SpringConfig config, double displayRate, int simulationRate) {
+        mNow = 0;
+        final FakeLooper looper = new FakeLooper(mClock);
+        looper.setSimulationRate(simulationRate);
+        final Spring spring = new BaseSpringSystem(looper).createSpring().setSpringConfig(config);
+        final double end = config.tension == 0 ? 0 : END_VALUE;
+        spring.setCurrentValue(0);
+        spring.setVelocity(START_VELOCITY);
+        spring.setEndValue(end);
+        final AnalyticSpring reference = new AnalyticSpring(config);
+        reference.setState(0, START_VELOCITY, end, 0);
+
+        final Run run = new Run();
+        long lastLoop = 0;
+        for (int frame = 1; frame < MAX_FRAMES && run.restTime < 0; frame++) {
+            mNow = (long) (frame * 1000 / displayRate);
+            final long skipped = looper.getSkippedFrameCount();
+            looper.frame(mNow);
+            // Only frames on which the system looped draw a new position
+            if (looper.getSkippedFrameCount() != skipped) continue;
+            run.loops++;
+            if (run.loops > 1) run.minLoopInterval = Math.min(run.minLoopInterval, mNow - lastLoop);
+            lastLoop = mNow;
+            final double position = spring.getCurrentValue();
+            run.maxError = Math.max(run.maxError, Math.min(
+                    Math.abs(position - reference.getPosition(mNow)),
+                    Math.abs(position - reference.getPosition(mNow - 1))));
+            if (!looper.mFramePosted) run.restTime = mNow;
+        }
+        assertTrue("Spring never came to rest", run.restTime > 0);
+        run.skippedFrames = looper.getSkippedFrameCount();
+        run.finalValue = spring.getCurrentValue();
+        return run;
+    }
+
+    private void assertSameCurveAtEveryRate(SpringConfig config) {
+        final Run baseline = fling(config, DISPLAY_RATES[0], 0);
+        for (double displayRate : DISPLAY_RATES) {
+            for (int simulationRate : new int[]{0, CAPPED_RATE}) {
+                final String label = displayRate + " Hz capped at " + simulationRate;
+                final Run run = fling(config, displayRate, simulationRate);
+                assertTrue(label + " off by " + run.maxError, run.maxError <= MAX_ERROR);
+                assertEquals(label, baseline.finalValue, run.finalValue, MAX_ERROR);
+                if (simulationRate > 0) {
+                    assertTrue(label + " looped after " + run.minLoopInterval + " ms",
+                            run.minLoopInterval + FRAME_TOLERANCE_MILLIS >= 1000.0 / simulationRate);
+                    assertTrue(label, run.loops < baseline.loops);
+                } else {
+                    assertEquals(label, 0, run.skippedFrames);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void flingFollowsSameCurve() {
+        assertSameCurveAtEveryRate(SpringConfigs.FLING);
+    }
+
+    @Test
+    public void snapFollowsSameCurve() {
+        assertSameCurveAtEveryRate(SpringConfigs.SNAP);
+    }
+
+    @Test
+    public void dragFollowsSameCurve() {
+        assertSameCurveAtEveryRate(SpringConfigs.DRAG);
+    }
+
+    @Test
+    public void chainLinkFollowsSameCurve() {
+        assertSameCurveAtEveryRate(SpringConfigs.chain(3, SpringConfigs.DEFAULT_CHAIN_CURVE)[2]);
+    }
+
+    @Test
+    public void firstFrameAfterStartAlwaysLoops() {
+        mNow = 0;
+        final FakeLooper looper = new FakeLooper(mClock);
+        looper.setSimulationRate(CAPPED_RATE);
+        assertEquals(CAPPED_RATE, looper.getSimulationRate());
+        final Spring spring = new BaseSpringSystem(looper).createSpring().setSpringConfig(SpringConfigs.SNAP);
+        spring.setEndValue(END_VALUE);
+        assertTrue(looper.mFramePosted);
+        looper.frame(7);
+        assertEquals(0, looper.getSkippedFrameCount());
+        assertTrue(spring.getCurrentValue() > 0);
+        looper.frame(14);
+        assertEquals(1, looper.getSkippedFrameCount());
+    }
+
+    @Test
+    public void stopCancelsPendingFrame() {
+        mNow = 0;
+        final FakeLooper looper = new FakeLooper(mClock);
+        final Spring spring = new BaseSpringSystem(looper).createSpring().setSpringConfig(SpringConfigs.SNAP);
+        spring.setEndValue(END_VALUE);
+        assertTrue(looper.mFramePosted);
+        looper.stop();
+        assertFalse(looper.mFramePosted);
+        // A frame already dispatched before the stop does nothing
+        looper.doFrame(16);
+        assertEquals(0, spring.getCurrentValue(), 0);
+        assertFalse(looper.mFramePosted);
+    }
+}
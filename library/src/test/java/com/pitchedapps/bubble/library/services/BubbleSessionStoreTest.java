@@ -0,0 +1,335 @@
+package com.pitchedapps.bubble.library.services;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Reads sessions written the way {@link BubbleSessionStore} writes them: a snapshot, and a journal
+ * of the changes made since.
+ */
+public class BubbleSessionStoreTest {
+
+    private static final String A = "https://example.com/a";
+    private static final String B = "https://example.com/b";
+    private static final String C = "https://example.com/c";
+    private static final String D = "https://example.com/d";
+    private static final int RED = 0xfff44336;
+    private static final int BLUE = 0xff2196f3;
+
+    @Rule
+    public final TemporaryFolder mFolder = new TemporaryFolder();
+
+    private File mSnapshotFile;
+    private File mJournalFile;
+
+    /**
+     * Journal records, written with the record format of the store.
+     */
+    private static final class Journal {
+        private final ByteArrayOutputStream mBytes = new ByteArrayOutputStream();
+        private final DataOutputStream mOut = new DataOutputStream(mBytes);
+
+        Journal() throws IOException {
+            mOut.writeInt(BubbleSessionStore.MAGIC);
+            mOut.writeByte(BubbleSessionStore.VERSION);
+        }
+
+        Journal add(String key) throws IOException {
+            mOut.writeByte(BubbleSessionStore.RECORD_ADD);
+            mOut.writeUTF(key);
+            return this;
+        }
+
+        Journal remove(String key) throws IOException {
+            mOut.writeByte(BubbleSessionStore.RECORD_REMOVE);
+            mOut.writeUTF(key);
+            return this;
+        }
+
+        Journal color(String key, int color) throws IOException {
+            mOut.writeByte(BubbleSessionStore.RECORD_COLOR);
+            mOut.writeUTF(key);
+            mOut.writeInt(color);
+            return this;
+        }
+
+        Journal master(int x, int y) throws IOException {
+            mOut.writeByte(BubbleSessionStore.RECORD_MASTER);
+            mOut.writeInt(x);
+            mOut.writeInt(y);
+            return this;
+        }
+
+        byte[] toByteArray() {
+            return mBytes.toByteArray();
+        }
+    }
+
+    @Before
+    public void setUp() {
+        mSnapshotFile = new File(mFolder.getRoot(), "bubbles.snapshot");
+        mJournalFile = new File(mFolder.getRoot(), "bubbles");
+    }
+
+    private static void writeFile(File file, byte[] bytes) throws IOException {
+        final FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(bytes);
+        } finally {
+            out.close();
+        }
+    }
+
+    private void writeJournal(Journal journal) throws IOException {
+        writeFile(mJournalFile, journal.toByteArray());
+    }
+
+    private void writeSnapshot(List<String> keys, Map<String, Integer> colors, boolean hasMaster,
+                               int masterX, int masterY) throws IOException {
+        BubbleSnapshot.write(mSnapshotFile, keys, colors, hasMaster, masterX, masterY);
+    }
+
+    private BubbleSessionStore.Session read() {
+        return BubbleSessionStore.read(mSnapshotFile, mJournalFile);
+    }
+
+    /**
+     * @return color of the key as the store resolves it, from the journal first and the snapshot otherwise
+     */
+    private static Integer colorOf(BubbleSessionStore.Session session, String key) {
+        final Integer color = session.colors.get(key);
+        if (color != null) return color;
+        final Integer index = session.snapshotIndex.get(key);
+        return index != null ? session.snapshot.colorAt(index) : null;
+    }
+
+    /**
+     * Writes the session as a snapshot, the way compaction does.
+     */
+    private void compact(BubbleSessionStore.Session session) throws IOException {
+        final Map<String, Integer> colors = new HashMap<>();
+        for (String key : session.keys) {
+            final Integer color = colorOf(session, key);
+            if (color != null) colors.put(key, color);
+        }
+        writeSnapshot(session.keys, colors, session.hasMasterPosition, session.masterX, session.masterY);
+    }
+
+    @Test
+    public void nothingWrittenIsEmpty() {
+        final BubbleSessionStore.Session session = read();
+        assertTrue(session.isEmpty());
+        assertFalse(session.hasMasterPosition);
+    }
+
+    @Test
+    public void roundTripThroughJournal() throws IOException {
+        writeJournal(new Journal().add(A).add(B).color(A, RED).add(C).remove(B).master(12, 34));
+        final BubbleSessionStore.Session session = read();
+        assertEquals(Arrays.asList(A, C), session.keys);
+        assertEquals(Integer.valueOf(RED), colorOf(session, A));
+        assertNull(colorOf(session, C));
+        assertTrue(session.hasMasterPosition);
+        assertEquals(12, session.masterX);
+        assertEquals(34, session.masterY);
+    }
+
+    @Test
+    public void journalIsReplayedOverSnapshot() throws IOException {
+        writeSnapshot(Arrays.asList(A, B, C), Collections.singletonMap(B, RED), true, 1, 2);
+        // B moved to the end keeping its color, C recolored, A removed
+        writeJournal(new Journal().remove(B).add(B).color(B, RED).color(C, BLUE).remove(A).add(D));
+        final BubbleSessionStore.Session session = read();
+        assertEquals(Arrays.asList(C, B, D), session.keys);
+        assertEquals(Integer.valueOf(RED), colorOf(session, B));
+        assertEquals(Integer.valueOf(BLUE), colorOf(session, C));
+        assertNull(colorOf(session, D));
+        assertEquals(1, session.masterX);
+        assertEquals(2, session.masterY);
+    }
+
+    @Test
+    public void snapshotColorsAreReadFromSnapshot() throws IOException {
+        writeSnapshot(Arrays.asList(A, B), Collections.singletonMap(A, BLUE), false, 0, 0);
+        final BubbleSessionStore.Session session = read();
+        assertEquals(Arrays.asList(A, B), session.keys);
+        assertTrue(session.colors.isEmpty());
+        assertEquals(Integer.valueOf(BLUE), colorOf(session, A));
+        assertNull(colorOf(session, B));
+    }
+
+    @Test
+    public void queuedEntriesStayUnreadAfterRestore() throws IOException {
+        final List<String> keys = new ArrayList<>();
+        final Map<String, Integer> colors = new HashMap<>();
+        for (int i = 0; i < 20; i++) {
+            final String key = "https://example.com/" + i;
+            keys.add(key);
+            colors.put(key, 0xff000000 | i);
+        }
+        writeSnapshot(keys, colors, false, 0, 0);
+        final BubbleSessionStore.Session session = read();
+        assertEquals(keys, session.keys);
+        for (int i = 0; i < keys.size(); i++) {
+            assertFalse(session.snapshot.isEntryRead(i));
+        }
+
+        // The visible bubbles are the newest ones, inflated with their color
+        for (int i = keys.size() - BubbleService.MAX_VISIBLE_BUBBLE_COUNT; i < keys.size(); i++) {
+            assertEquals(colors.get(keys.get(i)), colorOf(session, keys.get(i)));
+        }
+        for (int i = 0; i < keys.size(); i++) {
+            assertEquals(i >= keys.size() - BubbleService.MAX_VISIBLE_BUBBLE_COUNT, session.snapshot.isEntryRead(i));
+        }
+
+        // Promoting the newest queued bubble reads its entry only
+        final int promoted = keys.size() - BubbleService.MAX_VISIBLE_BUBBLE_COUNT - 1;
+        assertEquals(colors.get(keys.get(promoted)), colorOf(session, keys.get(promoted)));
+        assertTrue(session.snapshot.isEntryRead(promoted));
+        assertFalse(session.snapshot.isEntryRead(promoted - 1));
+    }
+
+    @Test
+    public void compactionCopiesUnreadEntries() throws IOException {
+        writeSnapshot(Arrays.asList(A, B, C), Collections.singletonMap(B, RED), false, 0, 0);
+        writeJournal(new Journal().color(A, BLUE));
+        final BubbleSessionStore.Session session = read();
+        final Map<String, Integer> colors = new HashMap<>(session.colors);
+        BubbleSnapshot.write(mSnapshotFile, session.keys, colors, session.snapshot, session.snapshotIndex,
+                session.hasMasterPosition, session.masterX, session.masterY);
+        // A has a color of its own, so no entry of the old snapshot was needed
+        for (int i = 0; i < session.snapshot.size(); i++) {
+            assertFalse(session.snapshot.isEntryRead(i));
+        }
+        assertTrue(mJournalFile.delete());
+        final BubbleSessionStore.Session compacted = read();
+        assertEquals(Arrays.asList(A, B, C), compacted.keys);
+        assertEquals(Integer.valueOf(BLUE), colorOf(compacted, A));
+        assertEquals(Integer.valueOf(RED), colorOf(compacted, B));
+        assertNull(colorOf(compacted, C));
+    }
+
+    @Test
+    public void flippedSnapshotKeyOnlyLosesThatKey() throws IOException {
+        writeSnapshot(Arrays.asList(A, B, C), Collections.<String, Integer>emptyMap(), false, 0, 0);
+        final RandomAccessFile file = new RandomAccessFile(mSnapshotFile, "rw");
+        try {
+            // Last byte of the key of the second entry, which starts after its length
+            file.seek(BubbleSnapshot.HEADER_SIZE + BubbleSnapshot.INDEX_ENTRY_SIZE);
+            final int offset = file.readInt() + 2 + B.length() - 1;
+            file.seek(offset);
+            final int value = file.read();
+            file.seek(offset);
+            file.write(value ^ 0x01);
+        } finally {
+            file.close();
+        }
+        writeJournal(new Journal().add(D));
+        assertEquals(Arrays.asList(A, C, D), read().keys);
+    }
+
+    @Test
+    public void damagedSnapshotHeaderKeepsJournal() throws IOException {
+        writeSnapshot(Arrays.asList(A, B), Collections.<String, Integer>emptyMap(), true, 1, 2);
+        final RandomAccessFile file = new RandomAccessFile(mSnapshotFile, "rw");
+        try {
+            file.seek(0);
+            file.writeInt(0);
+        } finally {
+            file.close();
+        }
+        writeJournal(new Journal().add(C).master(5, 6));
+        final BubbleSessionStore.Session session = read();
+        assertEquals(Collections.singletonList(C), session.keys);
+        assertEquals(5, session.masterX);
+        assertEquals(6, session.masterY);
+    }
+
+    @Test
+    public void truncatedJournalKeepsCompleteRecords() throws IOException {
+        final byte[] journal = new Journal().add(A).add(B).color(A, RED).add(C).toByteArray();
+        // The process was killed halfway through the last key
+        writeFile(mJournalFile, Arrays.copyOf(journal, journal.length - C.length() / 2));
+        final BubbleSessionStore.Session session = read();
+        assertEquals(Arrays.asList(A, B), session.keys);
+        assertEquals(Integer.valueOf(RED), colorOf(session, A));
+    }
+
+    @Test
+    public void truncatedJournalHeaderIsEmpty() throws IOException {
+        writeFile(mJournalFile, Arrays.copyOf(new Journal().add(A).toByteArray(), 3));
+        assertTrue(read().isEmpty());
+    }
+
+    @Test
+    public void unknownRecordStopsReplay() throws IOException {
+        final byte[] journal = new Journal().add(A).add(B).toByteArray();
+        final byte[] damaged = Arrays.copyOf(journal, journal.length + 1 + 2 + C.length());
+        // A record type that does not exist, followed by what looks like a key
+        damaged[journal.length] = 42;
+        writeFile(mJournalFile, damaged);
+        assertEquals(Arrays.asList(A, B), read().keys);
+    }
+
+    @Test
+    public void journalOfAnotherVersionIsIgnored() throws IOException {
+        writeSnapshot(Arrays.asList(A), Collections.<String, Integer>emptyMap(), false, 0, 0);
+        final byte[] journal = new Journal().add(B).toByteArray();
+        journal[4] = BubbleSessionStore.VERSION + 1;
+        writeFile(mJournalFile, journal);
+        assertEquals(Collections.singletonList(A), read().keys);
+    }
+
+    @Test
+    public void crashBetweenSnapshotRenameAndJournalDelete() throws IOException {
+        writeSnapshot(Arrays.asList(A, B, C), Collections.singletonMap(A, RED), true, 1, 2);
+        final Journal journal = new Journal()
+                .remove(A).add(A).color(A, RED)
+                .color(B, BLUE)
+                .remove(C)
+                .add(D).color(D, RED).remove(D).add(D)
+                .master(7, 8);
+        writeJournal(journal);
+        final BubbleSessionStore.Session expected = read();
+        assertEquals(Arrays.asList(B, A, D), expected.keys);
+
+        // The new snapshot was renamed into place, then the process died before the journal it
+        // already contains was deleted, so the journal is replayed on top of it again
+        compact(expected);
+        final BubbleSessionStore.Session replayed = read();
+        assertEquals(expected.keys, replayed.keys);
+        for (String key : expected.keys) {
+            assertEquals(key, colorOf(expected, key), colorOf(replayed, key));
+        }
+        assertEquals(7, replayed.masterX);
+        assertEquals(8, replayed.masterY);
+
+        // Same as once the journal is deleted
+        assertTrue(mJournalFile.delete());
+        final BubbleSessionStore.Session compacted = read();
+        assertEquals(expected.keys, compacted.keys);
+        for (String key : expected.keys) {
+            assertEquals(key, colorOf(expected, key), colorOf(compacted, key));
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package com.pitchedapps.bubble.library.services;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BubbleSnapshotTest {
+
+    private static final List<String> KEYS = Arrays.asList(
+            "https://example.com/a", "https://example.com/b", "https://example.com/\u00e9t\u00e9");
+    private static final Map<String, Integer> COLORS = new HashMap<>();
+
+    static {
+        COLORS.put(KEYS.get(0), 0xff2196f3);
+        COLORS.put(KEYS.get(2), 0xff000000);
+    }
+
+    @Rule
+    public final TemporaryFolder mFolder = new TemporaryFolder();
+
+    private static byte[] encode() throws Exception {
+        return BubbleSnapshot.encode(KEYS, COLORS, true, -12, 345);
+    }
+
+    private static BubbleSnapshot parse(byte[] bytes) throws Exception {
+        return BubbleSnapshot.parse(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * @return offset of the first byte of the key of the entry
+     */
+    private static int keyOffset(byte[] bytes, int index) {
+        return ByteBuffer.wrap(bytes).getInt(BubbleSnapshot.HEADER_SIZE + index * BubbleSnapshot.INDEX_ENTRY_SIZE) + 2;
+    }
+
+    /**
+     * @return offset of the first byte of the payload of the entry
+     */
+    private static int payloadOffset(byte[] bytes, int index) {
+        return ByteBuffer.wrap(bytes).getInt(BubbleSnapshot.HEADER_SIZE + index * BubbleSnapshot.INDEX_ENTRY_SIZE + 4) + 4;
+    }
+
+    private static void assertCorrupt(byte[] bytes) {
+        try {
+            parse(bytes);
+            fail("Parsed a damaged snapshot");
+        } catch (BubbleSnapshot.CorruptSnapshotException expected) {
+            // Expected
+        } catch (Exception e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    @Test
+    public void roundTrip() throws Exception {
+        final BubbleSnapshot snapshot = parse(encode());
+        assertEquals(KEYS.size(), snapshot.size());
+        for (int i = 0; i < KEYS.size(); i++) {
+            assertEquals(KEYS.get(i), snapshot.keyAt(i));
+            assertEquals(COLORS.get(KEYS.get(i)), snapshot.colorAt(i));
+        }
+        assertTrue(snapshot.hasMasterPosition());
+        assertEquals(-12, snapshot.getMasterX());
+        assertEquals(345, snapshot.getMasterY());
+    }
+
+    @Test
+    public void roundTripWithoutEntries() throws Exception {
+        final BubbleSnapshot snapshot = parse(BubbleSnapshot.encode(
+                Collections.<String>emptyList(), Collections.<String, Integer>emptyMap(), false, 0, 0));
+        assertEquals(0, snapshot.size());
+        assertFalse(snapshot.hasMasterPosition());
+    }
+
+    @Test
+    public void roundTripThroughFile() throws Exception {
+        final File file = new File(mFolder.getRoot(), "bubbles.snapshot");
+        BubbleSnapshot.write(file, KEYS, COLORS, true, -12, 345);
+        final BubbleSnapshot snapshot = BubbleSnapshot.open(file);
+        assertEquals(KEYS.size(), snapshot.size());
+        assertEquals(KEYS.get(2), snapshot.keyAt(2));
+        assertEquals(COLORS.get(KEYS.get(2)), snapshot.colorAt(2));
+    }
+
+    @Test
+    public void missingFileIsEmpty() throws Exception {
+        assertSame(BubbleSnapshot.EMPTY, BubbleSnapshot.open(new File(mFolder.getRoot(), "missing")));
+    }
+
+    @Test
+    public void keysAreReadWithoutEntries() throws Exception {
+        final BubbleSnapshot snapshot = parse(encode());
+        for (int i = 0; i < KEYS.size(); i++) {
+            assertEquals(KEYS.get(i), snapshot.keyAt(i));
+            assertFalse(snapshot.isEntryRead(i));
+        }
+        assertEquals(COLORS.get(KEYS.get(2)), snapshot.colorAt(2));
+        assertTrue(snapshot.isEntryRead(2));
+        assertFalse(snapshot.isEntryRead(0));
+        assertFalse(snapshot.isEntryRead(1));
+    }
+
+    @Test
+    public void flippedKeyByteOnlyLosesThatKey() throws Exception {
+        final byte[] bytes = encode();
+        // Last character of the key of the second entry
+        bytes[keyOffset(bytes, 1) + KEYS.get(1).length() - 1] ^= 0x01;
+        final BubbleSnapshot snapshot = parse(bytes);
+        assertEquals(KEYS.size(), snapshot.size());
+        assertEquals(KEYS.get(0), snapshot.keyAt(0));
+        assertNull(snapshot.keyAt(1));
+        assertEquals(KEYS.get(2), snapshot.keyAt(2));
+        assertEquals(COLORS.get(KEYS.get(2)), snapshot.colorAt(2));
+    }
+
+    @Test
+    public void flippedKeyLengthOnlyLosesThatKey() throws Exception {
+        final byte[] bytes = encode();
+        bytes[keyOffset(bytes, 0) - 1] ^= 0x10;
+        final BubbleSnapshot snapshot = parse(bytes);
+        assertNull(snapshot.keyAt(0));
+        assertEquals(KEYS.get(1), snapshot.keyAt(1));
+        assertEquals(KEYS.get(2), snapshot.keyAt(2));
+    }
+
+    @Test
+    public void flippedEntryByteOnlyLosesThatColor() throws Exception {
+        final byte[] bytes = encode();
+        // Lowest byte of the color of the first entry
+        bytes[payloadOffset(bytes, 0) + 4] ^= 0x01;
+        final BubbleSnapshot snapshot = parse(bytes);
+        assertEquals(KEYS.get(0), snapshot.keyAt(0));
+        assertNull(snapshot.colorAt(0));
+        assertTrue(snapshot.isEntryRead(0));
+        assertEquals(COLORS.get(KEYS.get(2)), snapshot.colorAt(2));
+    }
+
+    @Test
+    public void flippedEntryLengthOnlyLosesThatColor() throws Exception {
+        final byte[] bytes = encode();
+        bytes[payloadOffset(bytes, 2) - 1] ^= 0x10;
+        final BubbleSnapshot snapshot = parse(bytes);
+        assertEquals(KEYS.get(2), snapshot.keyAt(2));
+        assertNull(snapshot.colorAt(2));
+        assertEquals(COLORS.get(KEYS.get(0)), snapshot.colorAt(0));
+    }
+
+    @Test
+    public void unchangedEntriesAreCopiedWithoutBeingRead() throws Exception {
+        final BubbleSnapshot source = parse(encode());
+        final Map<String, Integer> sourceIndex = new HashMap<>();
+        for (int i = 0; i < KEYS.size(); i++) {
+            sourceIndex.put(source.keyAt(i), i);
+        }
+        // The first key got a new color, the other ones kept theirs
+        final Map<String, Integer> colors = Collections.singletonMap(KEYS.get(0), 0xfff44336);
+        final List<String> keys = Arrays.asList(KEYS.get(2), KEYS.get(1), KEYS.get(0));
+        final BubbleSnapshot copy = parse(BubbleSnapshot.encode(keys, colors, source, sourceIndex, false, 0, 0));
+        for (int i = 0; i < KEYS.size(); i++) {
+            assertFalse(source.isEntryRead(i));
+        }
+        assertEquals(keys.get(0), copy.keyAt(0));
+        assertEquals(COLORS.get(KEYS.get(2)), copy.colorAt(0));
+        assertNull(copy.colorAt(1));
+        assertEquals(Integer.valueOf(0xfff44336), copy.colorAt(2));
+    }
+
+    @Test
+    public void damagedEntryStaysDamagedWhenCopied() throws Exception {
+        final byte[] bytes = encode();
+        bytes[payloadOffset(bytes, 0) + 4] ^= 0x01;
+        final BubbleSnapshot source = parse(bytes);
+        final BubbleSnapshot copy = parse(BubbleSnapshot.encode(KEYS, Collections.<String, Integer>emptyMap(),
+                source, Collections.singletonMap(KEYS.get(0), 0), false, 0, 0));
+        assertEquals(KEYS.get(0), copy.keyAt(0));
+        assertNull(copy.colorAt(0));
+        assertTrue(copy.isEntryRead(0));
+    }
+
+    @Test
+    public void damagedHeaderIsRejected() throws Exception {
+        final byte[] bytes = encode();
+        // Master x, covered by the header checksum
+        bytes[17] ^= 0x01;
+        assertCorrupt(bytes);
+    }
+
+    @Test
+    public void damagedIndexIsRejected() throws Exception {
+        final byte[] bytes = encode();
+        bytes[BubbleSnapshot.HEADER_SIZE + BubbleSnapshot.INDEX_ENTRY_SIZE + 3] ^= 0x01;
+        assertCorrupt(bytes);
+    }
+
+    @Test
+    public void foreignFileIsRejected() throws Exception {
+        final byte[] magic = encode();
+        magic[0] ^= 0x01;
+        assertCorrupt(magic);
+
+        final byte[] version = encode();
+        ByteBuffer.wrap(version).putShort(4, (short) (BubbleSnapshot.VERSION + 1));
+        assertCorrupt(version);
+
+        final byte[] count = encode();
+        ByteBuffer.wrap(count).putInt(8, Integer.MAX_VALUE);
+        assertCorrupt(count);
+    }
+
+    @Test
+    public void truncatedHeaderIsRejected() throws Exception {
+        assertCorrupt(Arrays.copyOf(encode(), BubbleSnapshot.HEADER_SIZE - 1));
+    }
+
+    @Test
+    public void truncatedEntriesAreLost() throws Exception {
+        final byte[] bytes = encode();
+        // Cut in the middle of the last entry
+        final BubbleSnapshot entries = parse(Arrays.copyOf(bytes, payloadOffset(bytes, 2) + 2));
+        assertEquals(KEYS.get(2), entries.keyAt(2));
+        assertEquals(COLORS.get(KEYS.get(0)), entries.colorAt(0));
+        assertNull(entries.colorAt(2));
+        // Cut in the middle of the last key, before any entry
+        final BubbleSnapshot keys = parse(Arrays.copyOf(bytes, keyOffset(bytes, 2) + 4));
+        assertEquals(KEYS.get(0), keys.keyAt(0));
+        assertEquals(KEYS.get(1), keys.keyAt(1));
+        assertNull(keys.keyAt(2));
+        assertNull(keys.colorAt(0));
+    }
+}
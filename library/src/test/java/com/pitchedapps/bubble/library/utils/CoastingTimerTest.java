@@ -0,0 +1,132 @@
+package com.pitchedapps.bubble.library.utils;
+
+import com.facebook.rebound.BaseSpringSystem;
+import com.pitchedapps.bubble.library.physics.BubbleMotion;
+import com.pitchedapps.bubble.library.physics.ManualSpringLooper;
+import com.pitchedapps.bubble.library.physics.ScreenBounds;
+import com.pitchedapps.bubble.library.physics.SpringIdleTracker;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Releases a master on the scheduler clock the way {@code Bubble} does, and checks that it only
+ * coasts once {@link CoastingTimer#COASTING_DELAY} has passed, however early its springs rest.
+ */
+public class CoastingTimerTest {
+
+    private static final int FRAME_MILLIS = 16;
+    private static final int BUBBLE_WIDTH = 168;
+
+    private final ManualScheduler mScheduler = new ManualScheduler();
+    private final ManualSpringLooper mLooper = new ManualSpringLooper();
+    private BubbleMotion mMotion;
+    private CoastingTimer mTimer;
+    private SpringIdleTracker mIdleTracker;
+    private int mIdleCount;
+
+    @Before
+    public void setUp() {
+        final BaseSpringSystem springSystem = new BaseSpringSystem(mLooper);
+        mIdleTracker = new SpringIdleTracker(new SpringIdleTracker.Clock() {
+            @Override
+            public long now() {
+                return mScheduler.now();
+            }
+        }, new SpringIdleTracker.Listener() {
+            @Override
+            public void onSpringsActive() {
+            }
+
+            @Override
+            public void onSpringsIdle() {
+                mIdleCount++;
+            }
+        });
+        springSystem.addListener(mIdleTracker);
+        mMotion = new BubbleMotion(springSystem.createSpring(), springSystem.createSpring());
+        mMotion.setBounds(new ScreenBounds(1080, 1920, BUBBLE_WIDTH, 75));
+        mMotion.setPosition(700, 800);
+        mTimer = new CoastingTimer(mScheduler, new Runnable() {
+            @Override
+            public void run() {
+                mMotion.coast(BUBBLE_WIDTH);
+            }
+        });
+    }
+
+    /**
+     * Loops the spring system once per frame on the scheduler clock until it parks itself.
+     */
+    private void runUntilIdle() {
+        while (mLooper.isRunning()) {
+            mScheduler.advanceBy(FRAME_MILLIS);
+            mLooper.advance(FRAME_MILLIS);
+        }
+    }
+
+    /**
+     * Ends a drag without a fling, which sticks the master to the nearest wall.
+     */
+    private void release() {
+        mMotion.touchDown();
+        mMotion.updateDrag(100, 0, 0);
+        mMotion.dragTo(mMotion.getX() + 100, mMotion.getY());
+        mMotion.release(false, true);
+        mTimer.schedule();
+    }
+
+    @Test
+    public void restingMasterDoesNotCoastBeforeDelay() {
+        release();
+        runUntilIdle();
+        final long releasedFor = mScheduler.now();
+        assertEquals(1, mIdleCount);
+        assertTrue("Settled after " + releasedFor + " ms", releasedFor < CoastingTimer.COASTING_DELAY);
+        final int wallX = mMotion.getX();
+        assertEquals(mMotion.getBounds().right, wallX);
+
+        // The delay stays scheduled while the springs rest
+        assertTrue(mTimer.isScheduled());
+        mScheduler.advanceBy(CoastingTimer.COASTING_DELAY - 1 - releasedFor);
+        assertFalse(mMotion.isCoasting());
+        assertFalse(mLooper.isRunning());
+        assertEquals(wallX, mMotion.getX());
+
+        mScheduler.advanceBy(1);
+        assertFalse(mTimer.isScheduled());
+        assertTrue(mMotion.isCoasting());
+        runUntilIdle();
+        assertEquals(2, mIdleCount);
+        assertEquals(mMotion.getBounds().right + BUBBLE_WIDTH / 4, mMotion.getX());
+    }
+
+    @Test
+    public void touchRestartsDelay() {
+        release();
+        runUntilIdle();
+        mScheduler.advanceBy(CoastingTimer.COASTING_DELAY / 2);
+        final long secondRelease = mScheduler.now();
+        release();
+        runUntilIdle();
+        mScheduler.advanceBy(secondRelease + CoastingTimer.COASTING_DELAY - 1 - mScheduler.now());
+        assertFalse(mMotion.isCoasting());
+        mScheduler.advanceBy(1);
+        assertTrue(mMotion.isCoasting());
+    }
+
+    @Test
+    public void cancelledTimerNeverCoasts() {
+        release();
+        runUntilIdle();
+        mTimer.cancel();
+        assertFalse(mTimer.isScheduled());
+        mScheduler.advanceBy(2 * CoastingTimer.COASTING_DELAY);
+        assertFalse(mMotion.isCoasting());
+        assertFalse(mLooper.isRunning());
+    }
+}
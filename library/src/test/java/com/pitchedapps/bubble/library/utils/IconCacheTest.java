@@ -0,0 +1,46 @@
+package com.pitchedapps.bubble.library.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class IconCacheTest {
+
+    @Test
+    public void fittingImageKeepsItsSize() {
+        assertEquals(48, IconCache.fitToSize(48, 48, 32, 96));
+        assertEquals(32, IconCache.fitToSize(32, 48, 32, 96));
+        assertEquals(96, IconCache.fitToSize(96, 96, 96, 96));
+    }
+
+    @Test
+    public void squareImageScalesToSize() {
+        assertEquals(96, IconCache.fitToSize(512, 512, 512, 96));
+    }
+
+    @Test
+    public void landscapeImageFitsItsWidth() {
+        assertEquals(96, IconCache.fitToSize(400, 400, 200, 96));
+        assertEquals(48, IconCache.fitToSize(200, 400, 200, 96));
+    }
+
+    @Test
+    public void portraitImageFitsItsHeight() {
+        assertEquals(24, IconCache.fitToSize(100, 100, 400, 96));
+        assertEquals(96, IconCache.fitToSize(400, 100, 400, 96));
+    }
+
+    @Test
+    public void scaledSideRoundsToNearest() {
+        // 97 * 96 / 291 = 32
+        assertEquals(32, IconCache.fitToSize(97, 97, 291, 96));
+        // 100 * 96 / 300 = 32, 101 * 96 / 300 = 32.32
+        assertEquals(32, IconCache.fitToSize(101, 101, 300, 96));
+    }
+
+    @Test
+    public void thinImageKeepsAtLeastOnePixel() {
+        assertEquals(1, IconCache.fitToSize(1, 1, 1000, 96));
+        assertEquals(96, IconCache.fitToSize(1000, 1, 1000, 96));
+    }
+}
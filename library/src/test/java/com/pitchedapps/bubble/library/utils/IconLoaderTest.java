@@ -0,0 +1,99 @@
+package com.pitchedapps.bubble.library.utils;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class IconLoaderTest {
+
+    private static final int WHITE = 0xffffffff;
+    private static final int BLACK = 0xff000000;
+    private static final int RED = 0xffd32f2f;
+    private static final int BLUE = 0xff1976d2;
+
+    private static int[] fill(int count, int color) {
+        final int[] pixels = new int[count];
+        Arrays.fill(pixels, color);
+        return pixels;
+    }
+
+    private static int[] concat(int[]... parts) {
+        int length = 0;
+        for (int[] part : parts) length += part.length;
+        final int[] pixels = new int[length];
+        int offset = 0;
+        for (int[] part : parts) {
+            System.arraycopy(part, 0, pixels, offset, part.length);
+            offset += part.length;
+        }
+        return pixels;
+    }
+
+    @Test
+    public void inSampleSizeKeepsSmallImages() {
+        assertEquals(1, IconLoader.calculateInSampleSize(96, 96, 96));
+        assertEquals(1, IconLoader.calculateInSampleSize(191, 191, 96));
+        assertEquals(1, IconLoader.calculateInSampleSize(32, 32, 96));
+    }
+
+    @Test
+    public void inSampleSizeIsLargestPowerOfTwoAboveSize() {
+        assertEquals(2, IconLoader.calculateInSampleSize(192, 192, 96));
+        assertEquals(4, IconLoader.calculateInSampleSize(512, 512, 96));
+        assertEquals(16, IconLoader.calculateInSampleSize(2048, 2048, 96));
+    }
+
+    @Test
+    public void inSampleSizeKeepsShorterSideAtLeastSize() {
+        assertEquals(2, IconLoader.calculateInSampleSize(4096, 200, 96));
+        assertEquals(2, IconLoader.calculateInSampleSize(200, 4096, 96));
+    }
+
+    @Test
+    public void transparentIconHasNoOpaquePixel() {
+        assertFalse(IconLoader.hasOpaquePixel(fill(16, 0x7fffffff)));
+        assertTrue(IconLoader.hasOpaquePixel(concat(fill(15, 0x00ff0000), fill(1, 0x80ff0000))));
+    }
+
+    @Test
+    public void dominantColorOfTransparentIconIsBlack() {
+        assertEquals(BLACK, IconLoader.dominantColor(fill(16, 0x10ff0000)));
+        assertEquals(BLACK, IconLoader.dominantColor(new int[0]));
+    }
+
+    @Test
+    public void dominantColorOfSolidIconIsItsColor() {
+        assertEquals(RED, IconLoader.dominantColor(fill(64, RED)));
+    }
+
+    @Test
+    public void largestAreaWinsInsteadOfBlending() {
+        // A small red logo on a white background is white, the average would be a washed out pink
+        assertEquals(WHITE, IconLoader.dominantColor(concat(fill(30, RED), fill(70, WHITE))));
+        assertEquals(RED, IconLoader.dominantColor(concat(fill(70, RED), fill(30, BLUE))));
+    }
+
+    @Test
+    public void translucentPixelsDoNotCount() {
+        // Anti-aliased edges and shadows are mostly translucent
+        final int[] pixels = concat(fill(10, BLUE), fill(50, 0x40ffffff));
+        assertEquals(BLUE, IconLoader.dominantColor(pixels));
+    }
+
+    @Test
+    public void similarShadesAreAveragedWithinBucket() {
+        // Both shades fall in the same bucket of 16 levels per channel
+        final int[] pixels = concat(fill(10, 0xff102030), fill(10, 0xff122234), fill(5, WHITE));
+        assertEquals(0xff112132, IconLoader.dominantColor(pixels));
+    }
+
+    @Test
+    public void tieGoesToFirstBucket() {
+        assertEquals(BLUE, IconLoader.dominantColor(concat(fill(20, BLUE), fill(20, RED))));
+        assertEquals(RED, IconLoader.dominantColor(concat(fill(20, RED), fill(20, BLUE))));
+    }
+}
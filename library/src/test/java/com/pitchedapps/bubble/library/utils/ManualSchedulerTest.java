@@ -0,0 +1,140 @@
+package com.pitchedapps.bubble.library.utils;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class ManualSchedulerTest {
+
+    private ManualScheduler mScheduler;
+    // Names of the tasks in the order they ran, with the scheduler time of each run
+    private final List<String> mRuns = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        mScheduler = new ManualScheduler();
+        mRuns.clear();
+    }
+
+    private Runnable task(final String name) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                mRuns.add(name + "@" + mScheduler.now());
+            }
+        };
+    }
+
+    @Test
+    public void runsTasksInOrderOfDueTime() {
+        mScheduler.schedule(task("c"), 300);
+        mScheduler.schedule(task("a"), 100);
+        mScheduler.schedule(task("b"), 200);
+        mScheduler.advanceBy(1000);
+        assertEquals(Arrays.asList("a@100", "b@200", "c@300"), mRuns);
+        assertEquals(1000, mScheduler.now());
+    }
+
+    @Test
+    public void runsTasksDueTogetherInScheduleOrder() {
+        mScheduler.schedule(task("a"), 100);
+        mScheduler.schedule(task("b"), 100);
+        mScheduler.schedule(task("c"), 100);
+        mScheduler.advanceBy(100);
+        assertEquals(Arrays.asList("a@100", "b@100", "c@100"), mRuns);
+    }
+
+    @Test
+    public void advanceByRunsOnlyDueTasks() {
+        mScheduler.schedule(task("a"), 100);
+        mScheduler.schedule(task("b"), 101);
+        mScheduler.advanceBy(100);
+        assertEquals(Arrays.asList("a@100"), mRuns);
+        assertEquals(1, mScheduler.getPendingCount());
+        mScheduler.advanceBy(1);
+        assertEquals(Arrays.asList("a@100", "b@101"), mRuns);
+        assertEquals(0, mScheduler.getPendingCount());
+    }
+
+    @Test
+    public void cancelledTaskDoesNotRun() {
+        final Runnable a = task("a");
+        mScheduler.schedule(a, 100);
+        mScheduler.schedule(task("b"), 200);
+        mScheduler.cancel(a);
+        mScheduler.advanceBy(1000);
+        assertEquals(Arrays.asList("b@200"), mRuns);
+    }
+
+    @Test
+    public void cancellingUnscheduledTaskIsNoOp() {
+        mScheduler.schedule(task("a"), 100);
+        mScheduler.cancel(task("b"));
+        assertEquals(1, mScheduler.getPendingCount());
+    }
+
+    @Test
+    public void reschedulingTokenReplacesPendingRun() {
+        final Runnable a = task("a");
+        mScheduler.schedule(a, 100);
+        mScheduler.advanceBy(50);
+        mScheduler.schedule(a, 100);
+        assertEquals(1, mScheduler.getPendingCount());
+        mScheduler.advanceBy(60);
+        assertEquals(0, mRuns.size());
+        mScheduler.advanceBy(40);
+        assertEquals(Arrays.asList("a@150"), mRuns);
+    }
+
+    @Test
+    public void taskCanRescheduleItself() {
+        final Runnable[] tick = new Runnable[1];
+        tick[0] = new Runnable() {
+            @Override
+            public void run() {
+                mRuns.add("tick@" + mScheduler.now());
+                if (mRuns.size() < 3) mScheduler.schedule(tick[0], 100);
+            }
+        };
+        mScheduler.schedule(tick[0], 100);
+        mScheduler.advanceBy(250);
+        assertEquals(Arrays.asList("tick@100", "tick@200"), mRuns);
+        mScheduler.advanceBy(1000);
+        assertEquals(Arrays.asList("tick@100", "tick@200", "tick@300"), mRuns);
+    }
+
+    @Test
+    public void taskScheduledWhileAdvancingRunsIfDue() {
+        mScheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                mRuns.add("a@" + mScheduler.now());
+                mScheduler.schedule(task("b"), 10);
+                mScheduler.schedule(task("c"), 500);
+            }
+        }, 100);
+        mScheduler.advanceBy(200);
+        assertEquals(Arrays.asList("a@100", "b@110"), mRuns);
+        assertEquals(1, mScheduler.getPendingCount());
+    }
+
+    @Test
+    public void taskCanCancelAnotherDueTask() {
+        final Runnable b = task("b");
+        mScheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                mRuns.add("a@" + mScheduler.now());
+                mScheduler.cancel(b);
+            }
+        }, 100);
+        mScheduler.schedule(b, 100);
+        mScheduler.advanceBy(100);
+        assertEquals(Arrays.asList("a@100"), mRuns);
+    }
+}